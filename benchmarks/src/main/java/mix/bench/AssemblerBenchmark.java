@@ -0,0 +1,76 @@
+package mix.bench;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import mix.asm.MixAssembler;
+import mix.vm.MixContext;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Speed of {@link MixAssembler#compile MixAssembler.compile()} on a large
+ * synthetic source program, which exercises symbols, future references,
+ * local labels, literals, field specifications and comments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssemblerBenchmark
+{
+    /** The number of 9-word groups in the program; each also adds two
+     *  literals, so 300 groups nearly fill the memory.
+     */
+    @Param({"50", "300"})
+    public int groups;
+
+    private byte[] source;
+    private char[] chars;
+
+    @Setup(Level.Trial)
+    public void generate()
+    {
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        out.println("* SYNTHETIC PROGRAM FOR THE ASSEMBLER BENCHMARK");
+        out.println("BUF     EQU  3500");
+        out.println("        ORIG 100");
+        out.println("START   ENT1 0");
+        for(int g = 0; g<groups; g++)
+        {
+            out.println("* GROUP " + g);
+            out.println("G" + g + "      LDA  BUF+" + (g%100) + ",1(1:5)");
+            out.println("        ADD  =" + (g + 1) + "=");
+            out.println("        STA  BUF+" + (g%100) + "(0:3)");
+            out.println("1H      CMPA =" + (3*g) + "=");
+            out.println("        JL   1F");
+            out.println("        INC1 " + (g%7));
+            out.println("        JMP  1B          BACKWARD REFERENCE");
+            out.println("1H      JMP  N" + g + "          FUTURE REFERENCE");
+            out.println("N" + g + "      NOP");
+        }
+        out.println("        HLT");
+        out.println("        END  START");
+        out.flush();
+        source = sw.toString().getBytes();
+        chars = sw.toString().toCharArray();
+    }
+
+    @Benchmark
+    public int compile() throws Exception
+    {
+        MixAssembler asm = new MixAssembler(new ByteArrayInputStream(source));
+        asm.compile(Programs.NULL);
+        return asm.lineno();
+    }
+
+    /** The same, on the source already decoded into characters. */
+    @Benchmark
+    public int compileChars() throws Exception
+    {
+        MixAssembler asm = new MixAssembler(chars, chars.length, MixContext.standard());
+        asm.compile(Programs.NULL);
+        return asm.lineno();
+    }
+}
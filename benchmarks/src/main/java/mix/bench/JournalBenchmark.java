@@ -0,0 +1,57 @@
+package mix.bench;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import mix.vm.Journal;
+import mix.vm.MixVM;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of recording the undo {@link Journal} while running the sample
+ * programs through {@link MixVM#run run()}, the loop used by the IDE.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark
+{
+    @Param({"sort", "primes", "float"})
+    public String program;
+
+    @Param({"off", "on"})
+    public String journal;
+
+    private byte[] image;
+
+    private Journal log;
+
+    private MixVM mix;
+
+    @Setup(Level.Trial)
+    public void assemble() throws Exception
+    {
+        image = Programs.assemble(Programs.source(program));
+        log = new Journal();
+    }
+
+    @Setup(Level.Invocation)
+    public void load() throws Exception
+    {
+        mix = new MixVM();
+        for(int i = 16; i<MixVM.N_IO_UNITS; i++)
+            mix.attachOutput(i, Programs.NULL);
+        mix.start(mix.load(new ByteArrayInputStream(image)));
+        if(journal.equals("on"))
+            mix.setJournal(log);
+    }
+
+    @Benchmark
+    public long run() throws Exception
+    {
+        mix.run();
+        return mix.clock();
+    }
+}
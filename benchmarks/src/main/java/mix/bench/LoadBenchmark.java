@@ -0,0 +1,54 @@
+package mix.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import mix.vm.MixImage;
+import mix.vm.MixVM;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Speed of {@link MixVM#load MixVM.load()} on the memory dumps of the
+ * sample programs, and on the same programs as sparse binary images.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark
+{
+    @Param({"sort", "primes", "float"})
+    public String program;
+
+    private byte[] image;
+
+    private byte[] binary;
+
+    private MixVM mix;
+
+    @Setup(Level.Trial)
+    public void assemble() throws Exception
+    {
+        image = Programs.assemble(Programs.source(program));
+        mix = new MixVM();
+        int start = mix.load(new ByteArrayInputStream(image));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        mix.image(start, null).write(bos, true);
+        binary = bos.toByteArray();
+    }
+
+    @Benchmark
+    public int load() throws Exception
+    {
+        return mix.load(new ByteArrayInputStream(image));
+    }
+
+    @Benchmark
+    public int loadImage() throws Exception
+    {
+        return mix.load(MixImage.read(ByteBuffer.wrap(binary)));
+    }
+}
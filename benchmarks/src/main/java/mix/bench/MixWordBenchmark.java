@@ -0,0 +1,92 @@
+package mix.bench;
+
+import java.util.concurrent.TimeUnit;
+import mix.vm.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Field operations on MIX words, through the object representation
+ * {@link MixWord} and through the packed representation
+ * {@link PackedWord} used by the interpreter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixWordBenchmark
+{
+    /** Field specifications of various shapes. */
+    private static final int[] FIELDS = { 5, 13, 45, 3, 36, 29, 0, 12 };
+
+    private FieldSpecification[] fspecs;
+
+    private MixWord word;
+
+    private MixWord source;
+
+    private int packed;
+
+    private int packedSource;
+
+    private int k;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        fspecs = new FieldSpecification[FIELDS.length];
+        for(int i = 0; i<FIELDS.length; i++)
+            fspecs[i] = new FieldSpecification(FIELDS[i]);
+        word = new MixWord(MixVM.REGISTER_WIDTH, -123456789);
+        source = new MixWord(MixVM.REGISTER_WIDTH, 987654321);
+        packed = word.pack();
+        packedSource = source.pack();
+    }
+
+    private int next()
+    {
+        k = (k + 1) & 7;
+        return k;
+    }
+
+    @Benchmark
+    public int mixWordLoadField()
+    {
+        return word.subWord(fspecs[next()]).intValue();
+    }
+
+    @Benchmark
+    public MixWord mixWordStoreField()
+    {
+        word.subWord(fspecs[next()], source);
+        return word;
+    }
+
+    @Benchmark
+    public long mixWordShift()
+    {
+        MixWord w = new MixWord(word, source);
+        w.rotateLeft(next());
+        return w.longValue();
+    }
+
+    @Benchmark
+    public int packedLoadField()
+    {
+        return PackedWord.field(packed, FIELDS[next()]);
+    }
+
+    @Benchmark
+    public int packedStoreField()
+    {
+        packed = PackedWord.store(packed, FIELDS[next()], packedSource);
+        return packed;
+    }
+
+    @Benchmark
+    public long packedShift()
+    {
+        return PackedWord.rotateLeft(PackedWord.extended(packed, packedSource), next());
+    }
+}
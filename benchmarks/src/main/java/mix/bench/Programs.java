@@ -0,0 +1,58 @@
+package mix.bench;
+
+import java.io.*;
+import mix.asm.MixAssembler;
+
+/**
+ * Access to the sample MIXAL programs used by the benchmarks:
+ * <CODE>sort</CODE> (straight insertion sort, TAOCP 5.2.1),
+ * <CODE>primes</CODE> (table of primes, TAOCP 1.3.2) and
+ * <CODE>float</CODE> (floating-point arithmetic).
+ */
+public final class Programs
+{
+    /** An output stream discarding everything written to it. */
+    public static final PrintStream NULL = new PrintStream(new OutputStream()
+    {
+        public void write(int b) { }
+        public void write(byte[] b, int off, int len) { }
+    });
+
+    private Programs()
+    {
+    }
+
+    /** Return the MIXAL source of the named program.
+     */
+    public static byte[] source(String name) throws IOException
+    {
+        InputStream is = Programs.class.getResourceAsStream(name + ".mixal");
+        if(is==null)
+            throw new FileNotFoundException(name + ".mixal");
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while((n = is.read(buffer))>0)
+                bytes.write(buffer, 0, n);
+            return bytes.toByteArray();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /** Assemble a MIXAL source program, and return its memory dump.
+     */
+    public static byte[] assemble(byte[] source) throws Exception
+    {
+        MixAssembler asm = new MixAssembler(new ByteArrayInputStream(source));
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(dump);
+        asm.compile(ps);
+        ps.flush();
+        return dump.toByteArray();
+    }
+}
@@ -0,0 +1,69 @@
+package mix.bench;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import mix.vm.MixVM;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Execution throughput of the MIX virtual machine on complete programs,
+ * through the single-step loop used by the IDE, {@link MixVM#run run()}
+ * and the headless {@link MixVM#runFast runFast()}, with either
+ * dispatch engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VMBenchmark
+{
+    @Param({"sort", "primes", "float"})
+    public String program;
+
+    @Param({"table", "switch"})
+    public String dispatch;
+
+    private byte[] image;
+
+    private MixVM mix;
+
+    @Setup(Level.Trial)
+    public void assemble() throws Exception
+    {
+        image = Programs.assemble(Programs.source(program));
+    }
+
+    @Setup(Level.Invocation)
+    public void load() throws Exception
+    {
+        mix = new MixVM();
+        for(int i = 16; i<MixVM.N_IO_UNITS; i++)
+            mix.attachOutput(i, Programs.NULL);
+        mix.setTableDispatch(dispatch.equals("table"));
+        mix.start(mix.load(new ByteArrayInputStream(image)));
+    }
+
+    @Benchmark
+    public long step() throws Exception
+    {
+        while(!mix.isHalted())
+            mix.step();
+        return mix.clock();
+    }
+
+    @Benchmark
+    public long run() throws Exception
+    {
+        mix.run();
+        return mix.clock();
+    }
+
+    @Benchmark
+    public long runFast() throws Exception
+    {
+        mix.runFast(Long.MAX_VALUE);
+        return mix.clock();
+    }
+}
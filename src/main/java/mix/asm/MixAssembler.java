@@ -39,19 +39,22 @@ public class MixAssembler
 		ALF = 67,
 		END = 68;
 		
-	/** The source program. */
-	protected StreamTokenizer source;
+	/** The scanner of the source program. */
+	protected MixalLexer source;
 	
 	/** The destination memory dump file. */
 	protected PrintStream dest;
 	
-	/** The print stream to which log messages are to be directed. */
+	/** The print stream to which log messages are to be directed, or null. */
 	protected PrintStream log;
 	
 	/** A temporary MIX Virtual Machine to hold the assembled program.
 	 */
 	MixVM vm;
 	
+	/** The table of the operations and directives. */
+	protected OpcodeTable opcodes;
+	
 	/**
          * Assembler's state.
          * The initial state of an assembler session is <CODE>NEWLINE</CODE>.
@@ -73,6 +76,14 @@ public class MixAssembler
          */
 	int entryPoint = -1;
 	
+	/** The source line number of each assembled word, indexed by address.
+	 *  Zero means that no line of the program assembled a word there.
+	 */
+	int[] sourceLines;
+	
+	/** The number of the line being assembled. */
+	int line = 0;
+	
 	/** Counter for creating internal symbols. */
 	int internalCnt = 0;
 	
@@ -108,39 +119,52 @@ public class MixAssembler
 	 */
 	Map<String, MixWord> literals;
 	
-	/** Create a new assembler session on the given MIXAL source program.
+	/** Create a new assembler session on the given MIXAL source program,
+	 *  in the {@link MixContext#standard standard} context.
 	 */
 	public MixAssembler(InputStream is)
 	{
-		// Initialize the source tokenizer:
-		source = new StreamTokenizer(new BufferedReader(new InputStreamReader(is)));
-		source.whitespaceChars(0, 32);
-		source.eolIsSignificant(true);
-		source.quoteChar('"');
-		source.ordinaryChar('\'');
-		source.ordinaryChar('+');
-		source.ordinaryChar('-');
-		source.ordinaryChar('*');
-		source.ordinaryChar('/');
-		source.ordinaryChar(':');
-		source.ordinaryChar(',');
-		source.ordinaryChar('=');
-		source.ordinaryChar('(');
-		source.ordinaryChar(')');
+		this(is, MixContext.standard());
+	}
+	
+	/** Create a new assembler session on the given MIXAL source program,
+	 *  using the opcode table and the log of the given context. The program
+	 *  is read in full when compiled.
+	 */
+	public MixAssembler(InputStream is, MixContext context)
+	{
+		this(new MixalLexer(new InputStreamReader(is)), context);
+	}
+	
+	/** Create a new assembler session on the MIXAL source program held in
+	 *  the first <CODE>len</CODE> characters of the given array, using the
+	 *  opcode table and the log of the given context.
+	 */
+	public MixAssembler(char[] src, int len, MixContext context)
+	{
+		this(new MixalLexer(src, len), context);
+	}
+	
+	private MixAssembler(MixalLexer lexer, MixContext context)
+	{
+		source = lexer;
 		
 		// Initialize the symbol maps:
 		definedSymbols = new HashMap<String, Integer>();
 		futureReferences = new HashMap<String, Collection<Integer>>();
 		literals = new HashMap<String, MixWord>();
+		sourceLines = new int[MixVM.MEMORY_SIZE];
 
-		// Initialize the temporary virtual machine:		
-		vm = new MixVM();
+		// Initialize the temporary virtual machine, bound to no stream:
+		vm = new MixVM(context.withInput(null).withOutput(null));
+		opcodes = context.getOpcodes();
 		
 		// Initialize the print stream for log messages:
-		log = System.out;	// by default, the standard output
+		setLogStream(context.getLog());
 	}
 	
-	/** Set the terminal view
+	/** Set the print stream for log messages, or null for none, which
+	 *  spares the formatting of the messages.
 	 */
 	public void setLogStream(PrintStream ps)
 	{
@@ -226,7 +250,8 @@ public class MixAssembler
                 uses = new LinkedList<Integer>();
             uses.add(new Integer(address));
             futureReferences.put(symbol, uses);
-            log.println("Future reference: " + symbol);
+            if(log!=null)
+                log.println("Future reference: " + symbol);
 	}
 	
 	private int parseAtomicExpression()
@@ -242,7 +267,7 @@ public class MixAssembler
                 source.nextToken();
 
             if(source.ttype==source.TT_NUMBER)
-                return sign*(int) source.nval;
+                return sign*source.nval;
             if(source.ttype==source.TT_WORD)
                 return sign*lookup(source.sval);
             if(source.ttype=='*')
@@ -297,7 +322,7 @@ public class MixAssembler
                                 else
                                         value /= parseAtomicExpression();
                                 break;
-                            case StreamTokenizer.TT_WORD:
+                            case MixalLexer.TT_WORD:
                                 String localLabel = "" + (int) value;
                                 if(localLabel.length()==1 && localLabel.charAt(0)!='0')
                                 {
@@ -328,7 +353,8 @@ public class MixAssembler
                                 }
                                 // otherwise, just fall through to the default...
                             default:
-                                log.println("Expression value = " + value);
+                                if(log!=null)
+                                    log.println("Expression value = " + value);
                                 return value;
 			}
 		}
@@ -442,18 +468,26 @@ public class MixAssembler
 	private int parseWordValue()
 	throws IOException, MixAssemblerException
 	{
-		MixWord wval = new MixWord(vm.REGISTER_WIDTH);
+		int wval = 0;
 		
 		while(source.ttype!=source.TT_EOF)
 		{
 			int expr = parseExpression();
 			int f = parseFieldPart(5);
-			wval.subWord(new FieldSpecification(f), new MixWord(vm.REGISTER_WIDTH, expr));
+			if(f/8<=f%8 && f%8<=vm.REGISTER_WIDTH)
+				wval = PackedWord.store(wval, f/8, f%8, PackedWord.valueOf(expr));
+			else
+			{
+				// An invalid field is stored as it always was:
+				MixWord w = MixWord.unpack(vm.REGISTER_WIDTH, wval);
+				w.subWord(new FieldSpecification(f), new MixWord(vm.REGISTER_WIDTH, expr));
+				wval = w.pack();
+			}
 			if(source.ttype!=',')
 				break;
 			source.nextToken();
 		}
-		return wval.intValue();
+		return PackedWord.intValue(wval);
 	}
 	
 	/** Parse an alphanumeric value, consisting of a quote-enclosed string
@@ -479,27 +513,78 @@ public class MixAssembler
 		return -1;
 	}
 	
+	/** Return the source line number of each address, as a new array
+	 *  indexed by address; zero means that no line assembled a word at
+	 *  that address. This is meaningful after {@link #compile compile()}.
+	 */
+	public int[] getSourceLines()
+	{
+		return (int[]) sourceLines.clone();
+	}
+	
 	/** Compile the source program into the given memory dump file.
 	 */
 	public void compile(PrintStream ps) throws IOException, MixAssemblerException
+	{
+            compile(ps, false);
+	}
+	
+	/** Compile the source program into the given memory dump file,
+	 *  in full or in compact (run-length encoded) form, as written by
+	 *  {@link MixVM#dump(PrintStream, boolean) MixVM.dump()}.
+	 */
+	public void compile(PrintStream ps, boolean compact) throws IOException, MixAssemblerException
+	{
+            // Set ps as the destination memory dump file:
+            dest = ps;
+
+            assemble();
+
+            // Dump the assembled program to the destination file.
+            vm.dump(dest, compact);
+            dest.println(entryPoint);
+	}
+	
+	/** Compile the source program into a binary memory image, which
+	 *  also holds the entry point and the defined symbols (local labels
+	 *  excepted).
+	 */
+	public MixImage compile() throws IOException, MixAssemblerException
+	{
+            assemble();
+            return vm.image(entryPoint, getSymbols());
+	}
+	
+	/** Return the defined symbols and their values, local labels excepted.
+	 *  This is meaningful after {@link #compile compile()}.
+	 */
+	public Map<String, Integer> getSymbols()
+	{
+            Map<String, Integer> symbols = new TreeMap<String, Integer>(definedSymbols);
+            for(char c = '1'; c<='9'; c++)
+                symbols.remove(String.valueOf(c));
+            return symbols;
+	}
+	
+	/** Assemble the source program into the temporary virtual machine.
+	 */
+	private void assemble() throws IOException, MixAssemblerException
 	{
             Opcode op = null;
             String loc = null;
             boolean ended = false; // will be set to true upon encountering the END directive
 
-            // Set ps as the destination memory dump file:
-            dest = ps;
-
             while(source.nextToken()!=source.TT_EOF)
             {
                 switch(state)
                 {
                     case NEWLINE: // we are at the beginning of a new line:
+                        line = source.lineno();
                         if(source.ttype=='*') // this line is a comment
                             go(SKIPTOEOL);
                         else if(source.ttype==source.TT_WORD)
                         {
-                            op = new Opcode(source.sval);
+                            op = new Opcode(source.sval, opcodes);
                             if(ended)
                                 throw new MixAssemblerException("No instruction, directive or label definition allowed after the END directive.",
                                         source);
@@ -517,7 +602,7 @@ public class MixAssembler
                         else if(source.ttype==source.TT_NUMBER)
                         {
                             // this should be a local label definition, of the form [1-9]H:
-                            String localLabel = "" + (int) source.nval;
+                            String localLabel = String.valueOf(source.nval);
                             if(source.nextToken()!=source.TT_WORD || localLabel.length()>1 || localLabel.charAt(0)=='0')
                                 throw new MixAssemblerException("Symbol, directive, or opcode expected",
                                         source);
@@ -535,7 +620,7 @@ public class MixAssembler
                     case OPERATION: // we expect to read an operation symbol:
                         if(source.ttype!=source.TT_WORD)
                                 throw new MixAssemblerException("Directive or opcode expected", source);
-                        op = new Opcode(source.sval);
+                        op = new Opcode(source.sval, opcodes);
                         if(op.isUnknown())
                                 throw new MixAssemblerException("Directive or opcode unknown", source);
                         /*
@@ -545,8 +630,11 @@ public class MixAssembler
                         go(ARGUMENTS);
                         break;
                     case ARGUMENTS: // we expect to read the arguments of an instruction:
-                        log.println("LOC = " + loc);
-                        log.println("OP = " + op.mnemonic());
+                        if(log!=null)
+                        {
+                            log.println("LOC = " + loc);
+                            log.println("OP = " + op.mnemonic());
+                        }
                         // Rule 11 says: [...]	There are six possibilities for OP:
                         switch(op.code())
                         {
@@ -583,7 +671,8 @@ public class MixAssembler
                                         */
                                         if(loc!=null)
                                                 define(loc, address);
-                                        vm.write(address++, parseWordValue());
+                                        vm.write(address, parseWordValue());
+                                        sourceLines[address++] = line;
                                         break;
                                 case ALF:
                                         /*
@@ -593,13 +682,11 @@ public class MixAssembler
                                         N.B.: here we depart from Knuth's syntax in that the five
                                         characters must be enclosed between quotes.
                                         */
-                                        String s = parseStringValue();
-                                        MixWord alf = new MixWord(vm.REGISTER_WIDTH);
-                                        for(int i = 0; i<5; i++)
-                                                alf.setByte(i + 1, MixChar.number(s.charAt(i)));
+                                        int alf = MixChar.word(parseStringValue(), 0);
                                         if(loc!=null)
                                                 define(loc, address);
-                                        vm.write(address++, alf);
+                                        vm.write(address, alf);
+                                        sourceLines[address++] = line;
                                         break;
                                 case END:
                                         entryPoint = parseWordValue();
@@ -613,7 +700,7 @@ public class MixAssembler
                                                 new MixWord(vm.REGISTER_WIDTH, parseFieldPart(op.defaultVariant())));
                                         if(loc!=null)
                                                 define(loc, address);
-                                        address++;
+                                        sourceLines[address++] = line;
                                         break;
                                 default:
                                         /*
@@ -635,19 +722,16 @@ public class MixAssembler
 
                                            into the location specified by (*), and to advance (*) by 1.
                                         */
-                                        vm.write(address, op.code());
-                                        vm.write(address,
-                                                new FieldSpecification(0, 2),
-                                                new MixWord(vm.ADDRESS_WIDTH, parseAddressPart()));
-                                        vm.write(address,
-                                                new FieldSpecification(3, 3),
-                                                new MixWord(vm.REGISTER_WIDTH, parseIndexPart()));
-                                        vm.write(address,
-                                                new FieldSpecification(4, 4),
-                                                new MixWord(vm.REGISTER_WIDTH, parseFieldPart(op.defaultVariant())));
+                                        // The fields are assembled into a packed word,
+                                        // written once:
+                                        int word = PackedWord.valueOf(op.code());
+                                        word = PackedWord.store(word, 0, 2, PackedWord.valueOf(parseAddressPart()));
+                                        word = PackedWord.store(word, 3, 3, PackedWord.valueOf(parseIndexPart()));
+                                        word = PackedWord.store(word, 4, 4, PackedWord.valueOf(parseFieldPart(op.defaultVariant())));
+                                        vm.writePacked(address, word);
                                         if(loc!=null)
                                                 define(loc, address);
-                                        address++;
+                                        sourceLines[address++] = line;
                         }
                         if(source.ttype==source.TT_EOL)
                                 go(NEWLINE);
@@ -694,6 +778,8 @@ public class MixAssembler
             }
 
             // Print the symbol table for debugging purposes:
+            if(log==null)
+                return;
             it = definedSymbols.keySet().iterator();
             log.println("DEFINED SYMBOLS:");
             while(it.hasNext())
@@ -701,9 +787,5 @@ public class MixAssembler
                     String symbol = (String) it.next();
                     log.println(symbol + " = " + lookup(symbol));
             }
-
-            // Dump the assembled program to the destination file.
-            vm.dump(dest);
-            dest.println(entryPoint);
 	}
 }
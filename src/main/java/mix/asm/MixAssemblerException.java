@@ -16,6 +16,17 @@ public class MixAssemblerException extends Exception
 			"\n\tToken string value: " + st.sval + ".");
 	}
 	
+	/** Create a new compilation error to report, at the current token
+	 *  of the given scanner.
+	 */
+	public MixAssemblerException(String message, MixalLexer lx)
+	{
+		super(message + " at line " + lx.lineno() +
+			":\n\tToken type: " + getPrintableType(lx.ttype) +
+			"\n\tToken numeric value: " + lx.nval +
+			"\n\tToken string value: " + lx.sval + ".");
+	}
+	
 	// TODO: aggiungere un metodo statico che traduca il tipo di un token
 	// in una stringa comprensibile.
 	/**
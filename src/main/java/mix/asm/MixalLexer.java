@@ -0,0 +1,238 @@
+package mix.asm;
+
+import java.io.*;
+
+/** The lexical scanner of the MIXAL assembler, working on the source
+ *  program held in a character array.
+ *
+ *  <P>It follows the protocol of the <CODE>StreamTokenizer</CODE> it
+ *  replaces, configured as the assembler used it: {@link #nextToken
+ *  nextToken()} returns the type of the next token, which is also left
+ *  in {@link #ttype}, using the same type codes. Words are letters and
+ *  digits (and dots) starting with a letter; numbers are sequences of
+ *  decimal digits, scanned as integers; strings are enclosed between
+ *  double quotes; line terminators are tokens; any other character but
+ *  blanks and control characters is a token by itself.</P>
+ *
+ *  <P>Scanning allocates nothing per token: the value of a number is
+ *  accumulated into an <CODE>int</CODE>, and each distinct word is made
+ *  into a string only once, which is then shared by all its occurrences.
+ *  Only strings between quotes are made anew.</P>
+ */
+public class MixalLexer
+{
+	/** The token types, as for a <CODE>StreamTokenizer</CODE>. */
+	public static final int TT_EOF = StreamTokenizer.TT_EOF,
+		TT_EOL = StreamTokenizer.TT_EOL,
+		TT_NUMBER = StreamTokenizer.TT_NUMBER,
+		TT_WORD = StreamTokenizer.TT_WORD;
+
+	/** The type of the current token: one of the TT constants, '"' for a
+	 *  string, or the character itself for any other character.
+	 */
+	public int ttype = TT_EOL;
+
+	/** The text of the current word or string, or null. */
+	public String sval;
+
+	/** The value of the current number, or of the last one. Numbers too
+	 *  large for an <CODE>int</CODE> are clamped to its maximum value.
+	 */
+	public int nval;
+
+	/** The source program, once read. */
+	private char[] buf;
+
+	/** The length of the source program in the buffer. */
+	private int len;
+
+	/** The position of the next character to scan. */
+	private int pos;
+
+	/** The number of the current line. */
+	private int line = 1;
+
+	/** The source not yet read into the buffer, or null. */
+	private Reader reader;
+
+	/** The words met so far, hashed by open addressing. */
+	private String[] words = new String[1024];
+	private int nwords;
+
+	/** Create a scanner reading the given source program, which is read
+	 *  in full on the first call to {@link #nextToken nextToken()}.
+	 */
+	public MixalLexer(Reader r)
+	{
+		reader = r;
+	}
+
+	/** Create a scanner on the first <CODE>len</CODE> characters of the
+	 *  given array, which is not copied.
+	 */
+	public MixalLexer(char[] src, int len)
+	{
+		buf = src;
+		this.len = len;
+	}
+
+	/** Return the number of the current line. */
+	public int lineno()
+	{
+		return line;
+	}
+
+	/** Scan the next token and return its type.
+	 */
+	public int nextToken() throws IOException
+	{
+		if(reader!=null)
+			read();
+		sval = null;
+		char[] b = buf;
+		int n = len;
+		int i = pos;
+		char c = 0;
+		while(i<n && (c = b[i])<=' ' && c!='\n' && c!='\r')
+			i++;
+		if(i>=n)
+		{
+			pos = i;
+			return ttype = TT_EOF;
+		}
+		i++;
+		if(c=='\n' || c=='\r')
+		{
+			// "\r\n" is a single line terminator:
+			if(c=='\r' && i<n && b[i]=='\n')
+				i++;
+			line++;
+			pos = i;
+			return ttype = TT_EOL;
+		}
+		if(isLetter(c))
+		{
+			int start = i - 1;
+			int h = c;
+			while(i<n && (isLetter(c = b[i]) || c>='0' && c<='9' || c=='.'))
+			{
+				h = 31*h + c;
+				i++;
+			}
+			pos = i;
+			sval = word(start, i - start, h);
+			return ttype = TT_WORD;
+		}
+		if(c>='0' && c<='9' || c=='.')
+		{
+			// The digits after a dot, if any, are skipped:
+			boolean dot = c=='.';
+			long v = dot ? 0 : c - '0';
+			while(i<n)
+			{
+				c = b[i];
+				if(c>='0' && c<='9')
+				{
+					if(!dot && v<=Integer.MAX_VALUE)
+						v = 10*v + (c - '0');
+				}
+				else if(c!='.' || dot)
+					break;
+				else
+					dot = true;
+				i++;
+			}
+			pos = i;
+			nval = (int) Math.min(v, Integer.MAX_VALUE);
+			return ttype = TT_NUMBER;
+		}
+		if(c=='"')
+		{
+			int start = i;
+			while(i<n && (c = b[i])!='"' && c!='\n' && c!='\r')
+				i++;
+			sval = new String(b, start, i - start);
+			// The closing quote is skipped; a line terminator is kept:
+			if(i<n && c=='"')
+				i++;
+			pos = i;
+			return ttype = '"';
+		}
+		pos = i;
+		return ttype = c;
+	}
+
+	private static boolean isLetter(char c)
+	{
+		return c>='A' && c<='Z' || c>='a' && c<='z' || c>=160;
+	}
+
+	/** Return the shared string of the word with the given position,
+	 *  length and hash code, making it if it is new.
+	 */
+	private String word(int start, int length, int h)
+	{
+		int mask = words.length - 1;
+		for(int k = (h ^ h >>> 16) & mask; ; k = (k + 1) & mask)
+		{
+			String s = words[k];
+			if(s==null)
+			{
+				s = new String(buf, start, length);
+				words[k] = s;
+				if(++nwords*2>words.length)
+					rehash();
+				return s;
+			}
+			if(s.hashCode()==h && s.length()==length && matches(s, start))
+				return s;
+		}
+	}
+
+	private boolean matches(String s, int start)
+	{
+		for(int j = s.length() - 1; j>=0; j--)
+			if(s.charAt(j)!=buf[start + j])
+				return false;
+		return true;
+	}
+
+	private void rehash()
+	{
+		String[] old = words;
+		words = new String[2*old.length];
+		int mask = words.length - 1;
+		for(String s : old)
+		{
+			if(s==null)
+				continue;
+			int h = s.hashCode();
+			int k = (h ^ h >>> 16) & mask;
+			while(words[k]!=null)
+				k = (k + 1) & mask;
+			words[k] = s;
+		}
+	}
+
+	/** Read the whole source program into the buffer.
+	 */
+	private void read() throws IOException
+	{
+		Reader r = reader;
+		reader = null;
+		char[] b = new char[8192];
+		int n = 0, k;
+		while((k = r.read(b, n, b.length - n))>=0)
+		{
+			n += k;
+			if(n==b.length)
+			{
+				char[] bigger = new char[2*b.length];
+				System.arraycopy(b, 0, bigger, 0, n);
+				b = bigger;
+			}
+		}
+		buf = b;
+		len = n;
+	}
+}
@@ -1,7 +1,6 @@
 package mix.asm;
 
 import mix.vm.*;
-import java.util.*;
 
 /**
  * This class encapsulates the concept of opcode, including assembler
@@ -13,16 +12,8 @@ public class Opcode
 {
 	/** A conventional instruction code for "unknown opcode".
 	 */
-	public static int UNKNOWN = -1;
+	public static final int UNKNOWN = -1;
 	
-	/** Lookup table of symbolic names of operations and assembler directives.
-	 */
-	protected static MixalSymbolTable symbol = new MixalSymbolTable();
-
-	/** Reverse lookup table of opcodes, for disassembly.
-	 */
-	protected static Properties codes = reverse(symbol);
-
 	/** The symbolic opcode as passed to the constructor. */
 	protected String OP;
 	
@@ -34,37 +25,20 @@ public class Opcode
 	 */	
 	protected int F;
 
-	/** Reverses the provided symbol table, making it possible
-	 *  to associate a mnemonic to every numerical opcode.
-	 *
-	 *  @author Stefano Marino, Andrea G. B. Tettamanzi
+	/** Disassemble an instruction, using the standard opcode table.
 	 */	
-	private static Properties reverse(MixalSymbolTable s)
+	public static String decode(MixWord mw)
 	{
-		if(s==null) return null;
-		Properties rev = new Properties();
-		for(Iterator i = s.keySet().iterator(); i.hasNext();)
-		{
-			 String mnemonic = (String) i.next();
-			 if(!mnemonic.endsWith("_F"))
-			 {
- 				String pair = "" + s.getProperty(mnemonic).trim();
- 				if(s.containsKey(mnemonic + "_F"))
- 					pair += " " + s.getProperty(mnemonic + "_F").trim();
-				rev.setProperty(pair, mnemonic);
-			 }
-		}
-		// rev.list(System.out);
-		return rev;
+		return decode(mw, OpcodeTable.standard());
 	}
 		
-	/** Disassemble an instruction.
+	/** Disassemble an instruction, using the given opcode table.
 	 *
 	 *  @author Stefano Marino, Andrea G. B. Tettamanzi
 	 */	
-	public static String decode(MixWord mw)
+	public static String decode(MixWord mw, OpcodeTable table)
 	{
-		Opcode oc = new Opcode(mw);
+		Opcode oc = new Opcode(mw, table);
 		String ret = oc.mnemonic();
 		if(ret!=null)
 		{
@@ -75,57 +49,43 @@ public class Opcode
 				ret += addr;
 			if(mw.getByte(3).intValue()>0)
 				ret += (addr==0 ? "0" : "") + "," + mw.getByte(3).intValue();
-			if(mw.getByte(4).intValue()!=Integer.parseInt(symbol.getProperty(oc.mnemonic() + "_F", "5")))
+			if(mw.getByte(4).intValue()!=table.defaultField(oc.mnemonic()))
 				ret += "(" + mw.getByte(4).intValue()/8 + ":" + mw.getByte(4).intValue()%8 + ")";
 			return "  " + ret;
 		}
 		return "";
 	}
     
-	/** Look up the numerical operation code of the given symbolic opcode.
+	/** Look up the numerical operation code of the given symbolic opcode
+	 *  in the standard opcode table.
 	 */
 	public static int code(String w)
 	{
-		return Integer.parseInt(symbol.getProperty(w, "-1"));
+		return OpcodeTable.standard().code(w);
 	}
 	
-	/** Create a new opcode instance based on its symbolic name.
+	/** Create a new opcode instance based on its symbolic name, looked up
+	 *  in the given opcode table.
 	 *  If the word token is not a recognized opcode or assembler directive,
 	 *  the opcode will assume the UNKNOWN code
 	 */
-	public Opcode(String w)
+	public Opcode(String w, OpcodeTable table)
 	{
 		OP = w;
 		// Look up the numerical operation code, default is UNKNOWN
-		C = Integer.parseInt(symbol.getProperty(OP, "-1"));
+		C = table.code(OP);
 		// Look up the default value of the variant field, default is (0:5)
-		F = Integer.parseInt(symbol.getProperty(OP + "_F", "5"));
+		F = table.defaultField(OP);
 	}
 	
-	/** Create a new opcode instance based on a Mix word.
+	/** Create a new opcode instance based on a Mix word, whose mnemonic
+	 *  is looked up in the given opcode table.
 	 */
-	public Opcode(MixWord mw)
+	public Opcode(MixWord mw, OpcodeTable table)
 	{
             C = mw.getByte(5).intValue();
             F = mw.getByte(4).intValue();
-            // Look up the mnemonic:
-            // Simplest case: mnemonic with explicit default F
-            if(codes.containsKey("" + C + " " + F))
-                OP = codes.getProperty("" + C + " " + F);
-            // Normal case: mnemonic with implicit default F:
-            else if(codes.containsKey("" + C))
-                OP = codes.getProperty("" + C);
-            // Most complicated case: mnemonic with nondefault F
-            else
-            {
-                OP = "???";
-                for(int f = 0; f<6; f++)
-                    if(codes.containsKey("" + C + " " + f))
-                    {
-                        OP = codes.getProperty("" + C + " " + f);
-                        break;
-                    }
-            }
+            OP = table.name(C, F);
 	}
 		
 	/** Check whether the opcode is unknown.
@@ -6,4 +6,9 @@ public class SymbolNotFoundException extends MixAssemblerException
 	{
 		super("Cannot resolve symbol " + symbol, st);
 	}
+
+	public SymbolNotFoundException(String symbol, MixalLexer lx)
+	{
+		super("Cannot resolve symbol " + symbol, lx);
+	}
 }
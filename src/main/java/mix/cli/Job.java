@@ -0,0 +1,222 @@
+package mix.cli;
+
+import java.io.*;
+import java.util.*;
+import mix.asm.*;
+import mix.vm.*;
+
+/**
+ * A program to be run headless on a MIX virtual machine of its own, with
+ * its input, the files attached to its units and its limits; once run, it
+ * also holds the outcome of the run.
+ *
+ * <P>The program is either a MIXAL source file, recognized by the
+ * extension <CODE>.mix</CODE> or <CODE>.mixal</CODE>, which is assembled
+ * first, or a binary image or dump file. The card reader (unit 16) reads
+ * the given input, and the card punch, the line printer, the typewriter
+ * and the paper tape (units 17 to 20) all write to the given output.</P>
+ */
+public class Job
+{
+	/** The outcomes of a run, as for a {@link Farm}. */
+	public static final int HALTED = Farm.HALTED, STEP_LIMIT = Farm.STEP_LIMIT,
+		CYCLE_LIMIT = Farm.CYCLE_LIMIT, FAILED = Farm.FAILED;
+
+	/** The program to run. */
+	protected File program;
+
+	/** The file read by the card reader, or null. */
+	protected File input;
+
+	/** The files attached to the other units, by unit number. */
+	protected Map<Integer, File> units = new TreeMap<Integer, File>();
+
+	protected long maxSteps = Long.MAX_VALUE;
+	protected long maxCycles = Long.MAX_VALUE;
+	protected boolean ioTiming;
+
+	private int outcome = -1;
+	private long steps;
+	private long clock;
+	private String error;
+
+	/** Create a job running the given program, with no limits.
+	 */
+	public Job(File program)
+	{
+		this.program = program;
+	}
+
+	/** Return the name of the program, without its directory.
+	 */
+	public String getName()
+	{
+		return program.getName();
+	}
+
+	public File getProgram() { return program; }
+
+	/** Set the file read by the card reader, instead of the input stream
+	 *  given to {@link #run run()}.
+	 */
+	public void setInput(File f) { input = f; }
+
+	public File getInput() { return input; }
+
+	/** Attach an I/O unit to a file for both input and output.
+	 */
+	public void attach(int unit, File f)
+	{
+		if(unit<0 || unit>=MixVM.N_IO_UNITS)
+			throw new IllegalArgumentException("Invalid unit: " + unit);
+		units.put(unit, f);
+	}
+
+	/** Set the maximum number of instructions executed.
+	 */
+	public void setMaxSteps(long n) { maxSteps = n; }
+
+	/** Set the maximum number of MIX cycles elapsed; see
+	 *  {@link MixVM#runFast(long, long) MixVM.runFast()}.
+	 */
+	public void setMaxCycles(long n) { maxCycles = n; }
+
+	/** Enable or disable the timing of I/O transfers in MIX cycles.
+	 */
+	public void setIOTiming(boolean b) { ioTiming = b; }
+
+	/** Copy the settings of another job, except the program.
+	 */
+	public void setup(Job other)
+	{
+		input = other.input;
+		units.putAll(other.units);
+		maxSteps = other.maxSteps;
+		maxCycles = other.maxCycles;
+		ioTiming = other.ioTiming;
+	}
+
+	/** Assemble or load the program, and run it on a new virtual machine
+	 *  until it halts, fails, or reaches a limit.
+	 *
+	 *  @param in the input of the card reader, unless an input file is set
+	 *  @param out the output of the output units
+	 *  @return the outcome
+	 */
+	public int run(InputStream in, PrintStream out)
+	{
+		steps = 0;
+		clock = 0;
+		error = null;
+		InputStream is = null;
+		if(input!=null)
+		{
+			try
+			{
+				in = is = new FileInputStream(input);
+			}
+			catch(IOException e)
+			{
+				outcome = FAILED;
+				error = e.getMessage();
+				return outcome;
+			}
+		}
+		MixVM mix = new MixVM(MixContext.standard().withInput(in).withOutput(out));
+		try
+		{
+			mix.setIOTiming(ioTiming);
+			for(Map.Entry<Integer, File> e : units.entrySet())
+				mix.attach(e.getKey(), e.getValue());
+			int start = load(mix);
+			if(start==MixVM.MEMORY_SIZE - 1)
+				start = 0;
+			mix.start(start);
+			steps = mix.runFast(maxSteps, maxCycles);
+			outcome = mix.isHalted() ? HALTED : steps>=maxSteps ? STEP_LIMIT : CYCLE_LIMIT;
+		}
+		catch(Exception e)
+		{
+			outcome = FAILED;
+			error = e.getMessage()!=null ? e.getMessage() : e.toString();
+		}
+		finally
+		{
+			clock = mix.clock();
+			mix.close();
+			if(is!=null)
+			{
+				try
+				{
+					is.close();
+				}
+				catch(IOException e)
+				{
+					// The input was read already.
+				}
+			}
+			out.flush();
+		}
+		return outcome;
+	}
+
+	/** Assemble or load the program, and return its binary image, with
+	 *  its start address if it has one; see {@link Farm}.
+	 */
+	public MixImage compile() throws IOException, MixAssemblerException
+	{
+		MixVM mix = new MixVM(MixContext.standard().withInput(null).withOutput(null));
+		try
+		{
+			int start = load(mix);
+			return mix.image(start==MixVM.MEMORY_SIZE - 1 ? -1 : start, null);
+		}
+		finally
+		{
+			mix.close();
+		}
+	}
+
+	/** Load the program into the memory of the machine, assembling it
+	 *  first if it is a source file.
+	 *
+	 *  @return the start address
+	 */
+	private int load(MixVM mix) throws IOException, MixAssemblerException
+	{
+		MixContext context = mix.getContext().withLog(null);
+		String name = getName().toLowerCase();
+		if(!name.endsWith(".mix") && !name.endsWith(".mixal"))
+			return mix.load(program);
+		InputStream src = new FileInputStream(program);
+		try
+		{
+			return mix.load(new MixAssembler(src, context).compile());
+		}
+		finally
+		{
+			src.close();
+		}
+	}
+
+	/** Return the outcome of the last run, or -1 if not run yet. */
+	public int getOutcome() { return outcome; }
+
+	/** Return the number of instructions executed by the last run. */
+	public long getSteps() { return steps; }
+
+	/** Return the clock of the machine at the end of the last run. */
+	public long getClock() { return clock; }
+
+	/** Return the error which made the last run fail, or null. */
+	public String getError() { return error; }
+
+	/** Return a one-line report of the outcome of the last run.
+	 */
+	public String toString()
+	{
+		if(outcome<0)
+			return getName() + ": not run";
+		return getName() + ": " + Farm.describe(outcome, steps, clock, error);
+	}
+}
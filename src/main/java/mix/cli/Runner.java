@@ -0,0 +1,345 @@
+package mix.cli;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import mix.vm.Farm;
+
+/**
+ * Runs MIX programs from the command line, without the IDE.
+ *
+ * <P>Usage:</P>
+ * <PRE>
+ *   java mix.cli.Runner [options] program
+ *   java mix.cli.Runner [options] -batch directory|manifest
+ * </PRE>
+ * <P>where a program is a MIXAL source file (<CODE>.mix</CODE> or
+ * <CODE>.mixal</CODE>), a binary image or a dump file, and the options
+ * are:</P>
+ * <PRE>
+ *   -steps n      stop after n instructions
+ *   -cycles n     stop after n MIX cycles
+ *   -in file      read the card reader (unit 16) from the file
+ *   -u n=file     attach unit n to the file
+ *   -timing       time the I/O transfers
+ *   -j n          run n jobs at a time (default: one per processor)
+ *   -out dir      write the output of each job to dir/program.out
+ *   -decks dir    run the program once per file of the directory
+ * </PRE>
+ *
+ * <P>A single program reads the standard input and writes the standard
+ * output; its outcome, instructions executed and clock are reported on the
+ * standard error. A batch is either every program of a directory, each
+ * reading the file with the same name and the extension <CODE>.in</CODE>,
+ * if any, or the programs listed in a manifest file, one per line, each
+ * followed by options of its own; paths are relative to the manifest,
+ * and lines starting with <CODE>#</CODE> are ignored. The jobs of a batch
+ * run in parallel, each on its own virtual machine, and are reported on
+ * the standard output in order, each followed by its output, unless
+ * written to files with <CODE>-out</CODE>.</P>
+ *
+ * <P>With <CODE>-decks</CODE>, a single program is run in parallel on
+ * every file of a directory, each being the input of the card reader, by
+ * a {@link Farm} sharing the loaded program between the runs; the runs
+ * are reported as in a batch, by the name of their deck.</P>
+ *
+ * <P>The exit status is 0 if all the programs halted, 1 otherwise.</P>
+ */
+public class Runner
+{
+	private static final String USAGE =
+		"Usage: java mix.cli.Runner [options] program\n"
+		+ "       java mix.cli.Runner [options] -batch directory|manifest\n"
+		+ "Options: -steps n, -cycles n, -in file, -u n=file, -timing, -j n, -out dir, -decks dir";
+
+	/** The number of jobs run at a time. */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/** The directory receiving the output of each job, or null. */
+	private File outputDir;
+
+	/** The directory of the decks of a farm, or null. */
+	private File decks;
+
+	/** Run the jobs of a batch in parallel, and report them in order.
+	 *
+	 *  @return true if all the programs halted
+	 */
+	public boolean runBatch(List<Job> jobs, final PrintStream report) throws InterruptedException
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, jobs.size())));
+		try
+		{
+			List<Future<byte[]>> outputs = new ArrayList<Future<byte[]>>();
+			for(final Job job : jobs)
+				outputs.add(pool.submit(new Callable<byte[]>() {
+					public byte[] call() throws IOException
+					{
+						ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+						job.run(new ByteArrayInputStream(new byte[0]), new PrintStream(bytes));
+						return save(job.getName(), bytes.toByteArray());
+					}
+				}));
+			boolean ok = true;
+			for(int i = 0; i<jobs.size(); i++)
+			{
+				Job job = jobs.get(i);
+				byte[] output;
+				try
+				{
+					output = outputs.get(i).get();
+				}
+				catch(ExecutionException e)
+				{
+					output = null;
+					report.println(job.getName() + ": cannot write output: " + e.getCause().getMessage());
+					ok = false;
+				}
+				report(report, job.toString(), output);
+				ok &= job.getOutcome()==Job.HALTED;
+			}
+			report.flush();
+			return ok;
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/** Run a program on every deck of a directory, in parallel, and
+	 *  report the runs in order.
+	 *
+	 *  @return true if all the runs halted
+	 */
+	public boolean runDecks(Job job, File dir, PrintStream report) throws Exception
+	{
+		List<File> decks = new ArrayList<File>();
+		File[] files = dir.listFiles();
+		if(files==null)
+			throw new IOException("Not a directory: " + dir);
+		Arrays.sort(files);
+		for(File f : files)
+			if(f.isFile())
+				decks.add(f);
+		Farm farm = new Farm(job.compile());
+		farm.setMaxSteps(job.maxSteps);
+		farm.setMaxCycles(job.maxCycles);
+		farm.setIOTiming(job.ioTiming);
+		farm.setThreads(parallelism);
+		try
+		{
+			List<Farm.Result> results = farm.runAll(decks);
+			boolean ok = true;
+			for(int i = 0; i<decks.size(); i++)
+			{
+				String name = decks.get(i).getName();
+				Farm.Result r = results.get(i);
+				byte[] output = r.getOutput();
+				try
+				{
+					output = save(name, output);
+				}
+				catch(IOException e)
+				{
+					report.println(name + ": cannot write output: " + e.getMessage());
+					ok = false;
+				}
+				report(report, name + ": " + r, output);
+				ok &= r.getOutcome()==Farm.HALTED;
+			}
+			report.flush();
+			return ok;
+		}
+		finally
+		{
+			farm.shutdown();
+		}
+	}
+
+	/** Write the output of a run to the output directory, if any.
+	 *
+	 *  @return the output, or null if it was written to a file
+	 */
+	private byte[] save(String name, byte[] output) throws IOException
+	{
+		if(outputDir==null)
+			return output;
+		OutputStream os = new FileOutputStream(new File(outputDir, name + ".out"));
+		try
+		{
+			os.write(output);
+		}
+		finally
+		{
+			os.close();
+		}
+		return null;
+	}
+
+	/** Print the report line of a run, followed by its output, if any.
+	 */
+	private static void report(PrintStream report, String line, byte[] output)
+	{
+		report.println(line);
+		if(output!=null && output.length>0)
+		{
+			report.write(output, 0, output.length);
+			if(output[output.length - 1]!='\n')
+				report.println();
+		}
+	}
+
+	/** Return the jobs of a batch: every program in a directory, or the
+	 *  programs listed in a manifest, set up like the given job.
+	 */
+	private static List<Job> batch(File f, Job defaults) throws IOException
+	{
+		List<Job> jobs = new ArrayList<Job>();
+		if(f.isDirectory())
+		{
+			File[] files = f.listFiles();
+			Arrays.sort(files);
+			for(File p : files)
+			{
+				String name = p.getName();
+				int dot = name.lastIndexOf('.');
+				String ext = dot<0 ? "" : name.substring(dot + 1).toLowerCase();
+				if(!p.isFile() || !(ext.equals("mix") || ext.equals("mixal") || ext.equals("mxi") || ext.equals("dmp")))
+					continue;
+				Job job = new Job(p);
+				job.setup(defaults);
+				File in = new File(f, name.substring(0, dot) + ".in");
+				if(in.isFile())
+					job.setInput(in);
+				jobs.add(job);
+			}
+			return jobs;
+		}
+		File dir = f.getAbsoluteFile().getParentFile();
+		BufferedReader r = new BufferedReader(new FileReader(f));
+		try
+		{
+			String line;
+			int lineno = 0;
+			while((line = r.readLine())!=null)
+			{
+				lineno++;
+				line = line.trim();
+				if(line.length()==0 || line.startsWith("#"))
+					continue;
+				String[] args = line.split("\\s+");
+				Job job = new Job(resolve(dir, args[0]));
+				job.setup(defaults);
+				try
+				{
+					if(parse(args, 1, job, dir, null)!=args.length)
+						throw new IllegalArgumentException("Unexpected argument");
+				}
+				catch(IllegalArgumentException e)
+				{
+					throw new IOException(f.getName() + ":" + lineno + ": " + e.getMessage());
+				}
+				jobs.add(job);
+			}
+		}
+		finally
+		{
+			r.close();
+		}
+		return jobs;
+	}
+
+	private static File resolve(File dir, String path)
+	{
+		File f = new File(path);
+		return f.isAbsolute() || dir==null ? f : new File(dir, path);
+	}
+
+	/** Parse the options from the given index, setting up the job, and the
+	 *  runner if not null.
+	 *
+	 *  @return the index of the first argument which is not an option
+	 */
+	private static int parse(String[] args, int i, Job job, File dir, Runner runner)
+	{
+		for(; i<args.length && args[i].startsWith("-") && !args[i].equals("-batch"); i++)
+		{
+			String opt = args[i];
+			if(opt.equals("-timing"))
+			{
+				job.setIOTiming(true);
+				continue;
+			}
+			if(i + 1>=args.length)
+				throw new IllegalArgumentException("Missing value for " + opt);
+			String v = args[++i];
+			if(opt.equals("-steps"))
+				job.setMaxSteps(Long.parseLong(v));
+			else if(opt.equals("-cycles"))
+				job.setMaxCycles(Long.parseLong(v));
+			else if(opt.equals("-in"))
+				job.setInput(resolve(dir, v));
+			else if(opt.equals("-u"))
+			{
+				int eq = v.indexOf('=');
+				if(eq<0)
+					throw new IllegalArgumentException("Expected -u n=file: " + v);
+				job.attach(Integer.parseInt(v.substring(0, eq)), resolve(dir, v.substring(eq + 1)));
+			}
+			else if(runner!=null && opt.equals("-j"))
+				runner.parallelism = Integer.parseInt(v);
+			else if(runner!=null && opt.equals("-out"))
+				runner.outputDir = new File(v);
+			else if(runner!=null && opt.equals("-decks"))
+				runner.decks = new File(v);
+			else
+				throw new IllegalArgumentException("Unknown option: " + opt);
+		}
+		return i;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		Runner runner = new Runner();
+		Job defaults = new Job(null);
+		int i;
+		try
+		{
+			i = parse(args, 0, defaults, null, runner);
+		}
+		catch(IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+		boolean ok;
+		if(runner.outputDir!=null)
+			runner.outputDir.mkdirs();
+		if(i + 2==args.length && args[i].equals("-batch"))
+			ok = runner.runBatch(batch(new File(args[i + 1]), defaults), System.out);
+		else if(i + 1==args.length && runner.decks!=null)
+		{
+			Job job = new Job(new File(args[i]));
+			job.setup(defaults);
+			ok = runner.runDecks(job, runner.decks, System.out);
+		}
+		else if(i + 1==args.length)
+		{
+			Job job = new Job(new File(args[i]));
+			job.setup(defaults);
+			job.run(System.in, System.out);
+			System.err.println(job);
+			ok = job.getOutcome()==Job.HALTED;
+		}
+		else
+		{
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+		System.exit(ok ? 0 : 1);
+	}
+}
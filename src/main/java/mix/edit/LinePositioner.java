@@ -27,7 +27,7 @@ public class LinePositioner extends JFrame {
 	public LinePositioner(MemoryView mview) {
 		super();
 		this.mview = mview;
-		line=mview.getSelectionStart()/mview.T_SIZE;
+		line=mview.getCurrentAddress();
 		initialize();
 	}
 
@@ -137,7 +137,7 @@ private JPanel getJPanel2() {
 			line = Integer.parseInt(jline.getText());
 			if(line>3999)line=3999;
 		}catch(Exception e){
-			line = memw.getSelectionStart()/mview.T_SIZE;
+			line = memw.getCurrentAddress();
 		}
 		jline.setText(lfiller('0',""+line,4));
 	}
@@ -34,10 +34,10 @@ public class RowModifier extends JFrame {
 	public RowModifier(MemoryView mview) {
 		super();
 		this.mview = mview;
-		line = mview.getSelectionStart()/mview.T_SIZE;
+		line = mview.getCurrentAddress();
 		try
                 {
-                    String content = mview.getText(mview.T_SIZE*line + 6, 16);
+                    String content = mview.getModel().getElementAt(line).substring(6, 22);
                     strword = content.split(" ");
                     tword = new MixWord(strword);
 		}
@@ -54,10 +54,10 @@ public class RowModifier extends JFrame {
 	
 	public void update(MemoryView mview){
 		this.mview = mview;
-		line=mview.getSelectionStart()/mview.T_SIZE;
+		line=mview.getCurrentAddress();
 		try
                 {
-                    String content = mview.getText(mview.T_SIZE*line + 6, 16);
+                    String content = mview.getModel().getElementAt(line).substring(6, 22);
                     strword = content.split(" ");
                     tword = new MixWord(strword);
                     jlinenum.setText(lfiller('0',""+line,4));		
@@ -67,7 +67,7 @@ public class RowModifier extends JFrame {
                     jb2.setText(strword[3]);
                     jb3.setText(strword[4]);
                     jb4.setText(strword[5]);
-                    jmnemo.setText(mix.asm.Opcode.decode(tword));		
+                    jmnemo.setText(mix.asm.Opcode.decode(tword, mview.getMixVM().getContext().getOpcodes()));		
 		}
                 catch(Exception be)
                 {
@@ -232,7 +232,7 @@ public class RowModifier extends JFrame {
 
 	private JTextField getJmnemo() {
 			if (jmnemo == null) {
-				jmnemo = new JTextField(mix.asm.Opcode.decode(tword));
+				jmnemo = new JTextField(mix.asm.Opcode.decode(tword, mview.getMixVM().getContext().getOpcodes()));
 				jmnemo.setFont(new java.awt.Font("Tahoma", java.awt.Font.BOLD, 10));
 				jmnemo.setEditable(false);
 			}
@@ -306,7 +306,7 @@ public class RowModifier extends JFrame {
 	}
 
 	private void refreshMnemo() {
-		jmnemo.setText(mix.asm.Opcode.decode(tword));
+		jmnemo.setText(mix.asm.Opcode.decode(tword, mview.getMixVM().getContext().getOpcodes()));
 	}
 
 	private void doReset() {
@@ -314,7 +314,7 @@ public class RowModifier extends JFrame {
 	}
 
 	private void doModify() {
-		mview.update(line,tword);
+		mview.getMixVM().write(line,tword);
 		update(mview);
 	}
 
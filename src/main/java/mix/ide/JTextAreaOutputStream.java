@@ -6,13 +6,42 @@ import javax.swing.*;
 /**
  * This class allows to write to a JTextArea as if it were
  * an OutputStream.
+ *
+ * <P>Bytes may be written from any thread: they are collected in a buffer,
+ * and appended to the text area on the event dispatch thread, all those
+ * written since the last append in one go. The bytes are decoded with the
+ * platform's default charset, the same used by a <CODE>PrintStream</CODE>
+ * to encode them.</P>
  */
 public class JTextAreaOutputStream extends OutputStream
 {
     protected JTextArea textArea;
 
+    /** The bytes written and not appended yet. */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /** Whether an append is already scheduled on the event dispatch thread. */
+    private boolean scheduled = false;
+
+    /** The task that appends the pending text, run on the event dispatch thread. */
+    private final Runnable append = new Runnable() {
+        public void run()
+        {
+            String s;
+            synchronized(pending)
+            {
+                s = pending.toString();
+                pending.reset();
+                scheduled = false;
+            }
+            textArea.append(s);
+            // Keep the last line written visible:
+            textArea.setCaretPosition(textArea.getDocument().getLength());
+        }
+    };
+
     /**
-     * Create a new output stream linked to the given 
+     * Create a new output stream linked to the given
      * target JTextArea.
      */
     public JTextAreaOutputStream(JTextArea target)
@@ -26,14 +55,35 @@ public class JTextAreaOutputStream extends OutputStream
      * to append a character to the target JTextArea.
      */
     public void write(int b)
-    {	
-        textArea.append(Character.toString((char) b));
-        // On a "new line", refresh the text area so that the line just
-        // written becomes immediately visible:
-        if((char) b=='\n')
+    {
+        synchronized(pending)
+        {
+            pending.write(b);
+            schedule();
+        }
+    }
+
+    /**
+     * Append a sequence of bytes to the target JTextArea.
+     */
+    public void write(byte[] b, int off, int len)
+    {
+        synchronized(pending)
+        {
+            pending.write(b, off, len);
+            schedule();
+        }
+    }
+
+    /** Schedule an append, unless one is already pending; must be called
+     *  while holding the lock on the buffer.
+     */
+    private void schedule()
+    {
+        if(!scheduled)
         {
-            textArea.setCaretPosition(textArea.getText().length());
-            textArea.paintImmediately(textArea.getVisibleRect());
+            scheduled = true;
+            SwingUtilities.invokeLater(append);
         }
     }
 }
@@ -1,156 +1,110 @@
 package mix.ide;
 
-import javax.swing.text.*;
-import javax.swing.event.*;
+import javax.swing.*;
 import mix.vm.*;
 
-/** This class provides a document model that enables the IDE to visualize
+/** This class provides a list model that enables the IDE to visualize
  *  a snapshot of the MIX memory contents.
- *  A snapshot of memory contents can be thought of a document containing
- *  one line per memory location (therefore 4000 lines). Each line is 30
- *  character long and has the following format:
- *  <BLOCKQUOTE>
- *    <CODE>
- *      aaaa: s bb cc dd ee ff "BCDEF"
- *    </CODE>
- *  </BLOCKQUOTE>
- *  where <CODE>aaaa</CODE> is the location address (0000 to 3999),
- *  <CODE>s</CODE> is a + or - sign, <CODE>bb</CODE> to <CODE>ff</CODE>
- *  are the bytes that make up the memory word, and <CODE>"BCDEF"</CODE>
- *  is the character-based representation of that memory word.
+ *  A snapshot of memory contents can be thought of a list containing
+ *  one line per memory location (therefore 4000 lines), in the format
+ *  described by {@link MemoryView}.
+ *
+ *  <P>The lines are not stored: each is formatted from the memory of the
+ *  virtual machine the first time it is asked for, which happens only
+ *  when it scrolls into view, and kept until the memory word it shows is
+ *  marked as changed.</P>
  */
-public class MemoryModel implements Document
+public class MemoryModel extends AbstractListModel<String>
 {
-	/** The number of character per line. Each line is 30
-	 *  character long and has the following format:
-	 *  <BLOCKQUOTE>
-	 *    <CODE>
-	 *      aaaa: s bb cc dd ee ff "BCDEF"
-	 *    </CODE>
-	 *  </BLOCKQUOTE>
-	 *  where <CODE>aaaa</CODE> is the location address (0000 to 3999),
-	 *  <CODE>s</CODE> is a + or - sign, <CODE>bb</CODE> to <CODE>ff</CODE>
-	 *  are the bytes that make up the memory word, and <CODE>"BCDEF"</CODE>
-	 *  is the character-based representation of that memory word.
-	 */
-	public final int LINE_SIZE = 30;
-	
-	/** The MIX virtual machine whose memory this model gives access to.
-	 */
-	protected MixVM vm;
-	
-	/** Create a new memory model which will provide an updated snapshot
-	 *  ov the contents of the given MIX virtual machine.
-	 */
-	public MemoryModel(MixVM vm)
-	{
-		this.vm = vm;
-	}
-	
-	public int getLength ()
-	{
-		return MixVM.MEMORY_SIZE*LINE_SIZE;
-	}
-
-	public void addDocumentListener (DocumentListener listener)
-	{
-		// TODO: Add your code here
-	}
-
-
-	public void removeDocumentListener (DocumentListener listener)
-	{
-		// TODO: Add your code here
-	}
-
-
-	public void addUndoableEditListener (UndoableEditListener listener)
-	{
-		// TODO: Add your code here
-	}
-
-
-	public void removeUndoableEditListener (UndoableEditListener listener)
-	{
-		// TODO: Add your code here
-	}
-
-
-	public Object getProperty (Object key)
-	{
-            // TODO: Add your code here
-            return null;
-	}
-
-
-	public void putProperty (Object key, Object value)
-	{
-		// TODO: Add your code here
-	}
-
-
-	public void remove (int offs, int len)
-	{
-		// TODO: Add your code here
-	}
+	/** The width of the fields of a line. */
+	static final int LINE_SIZE = 31, COMMENT_SIZE = 23, FP_SIZE = 15;
 
+	/** The filler character. */
+	static final char FILLER = ' ';
 
-	public void insertString (int offset, String str, AttributeSet a)
-	{
-		// TODO: Add your code here
-	}
-
-
-	public String getText (int offset, int length)
-	{
-            // TODO: Add your code here
-            return null;
-	}
-
+	/** The view whose MIX virtual machine this model gives access to.
+	 */
+	protected MemoryView view;
 
-	public void getText (int offset, int length, Segment txt)
-	{
-		// TODO: Add your code here
-	}
+	/** The lines formatted so far; null for those not formatted yet or
+	 *  whose memory word has changed since.
+	 */
+	private final String[] lines = new String[MixVM.MEMORY_SIZE];
 
+	/** The address marked by the location pointer. */
+	private int location;
 
-	public Position getStartPosition ()
+	/** Create a new memory model which will provide an updated snapshot
+	 *  of the contents of the MIX virtual machine of the given view.
+	 */
+	public MemoryModel(MemoryView view)
 	{
-            // TODO: Add your code here
-            return null;
+		this.view = view;
 	}
 
-
-	public Position getEndPosition ()
+	public int getSize()
 	{
-            // TODO: Add your code here
-            return null;
+		return MixVM.MEMORY_SIZE;
 	}
 
-
-	public Position createPosition (int offs)
+	/** Return the line of the given address, formatting it if needed.
+	 */
+	public String getElementAt(int address)
 	{
-            // TODO: Add your code here
-            return null;
+		String s = lines[address];
+		if(s==null)
+			lines[address] = s = line(address);
+		return s;
 	}
 
-
-	public Element[] getRootElements ()
+	/** Forget the lines of the given range of addresses, so that they are
+	 *  formatted again when next shown.
+	 */
+	void invalidate(int from, int to)
 	{
-            // TODO: Add your code here
-            return null;
+		for(int i = from; i<=to; i++)
+			lines[i] = null;
 	}
 
-
-	public Element getDefaultRootElement ()
+	/** Move the location pointer, forgetting the lines it leaves and
+	 *  reaches.
+	 */
+	void setLocation(int address)
 	{
-            // TODO: Add your code here
-            return null;
+		lines[location] = null;
+		location = address;
+		lines[location] = null;
 	}
 
-
-	public void render (Runnable r)
-	{
-            // TODO: Add your code here
+	/** Format the line of a memory word.
+	 */
+	private String line(int address)
+	{
+		MixVM vm = view.getMixVM();
+		int w = vm!=null ? vm.getMemory().get(address) : 0;
+		StringBuilder str = new StringBuilder(LINE_SIZE + COMMENT_SIZE + FP_SIZE);
+
+		if(address<1000)
+			str.append('0');
+		if(address<100)
+			str.append('0');
+		if(address<10)
+			str.append('0');
+		str.append(address).append(address==location ? ":*" : ": ");
+		str.append(PackedWord.sign(w)<0 ? '-' : '+');
+		for(int i = 1; i<=MixVM.REGISTER_WIDTH; i++)
+		{
+			int b = PackedWord.getByte(w, i);
+			str.append(' ');
+			if(b<10)
+				str.append('0');
+			str.append(b);
+		}
+		str.append(" \"").append(MixChar.toString(w)).append('"');
+		MixWord word = MixWord.unpack(MixVM.REGISTER_WIDTH, w);
+		String instr = vm!=null ? mix.asm.Opcode.decode(word, vm.getContext().getOpcodes()) : "";
+		str.append(MemoryView.comment(instr, COMMENT_SIZE, FILLER));
+		str.append(MemoryView.comment(String.format("%e", PackedWord.doubleValue(w)), FP_SIZE, FILLER));
+		return str.toString();
 	}
 }
@@ -5,9 +5,9 @@ import javax.swing.*;
 import mix.edit.RowModifier;
 import mix.vm.*;
 
-/** This class provides a text area that enables the IDE to visualize
+/** This class provides a list that enables the IDE to visualize
  *  a snapshot of the MIX memory contents.
- *  A snapshot of memory contents can be thought of a document containing
+ *  A snapshot of memory contents can be thought of a list containing
  *  one line per memory location (therefore 4000 lines). Each line is 30
  *  character long and has the following format:
  *  <BLOCKQUOTE>
@@ -22,56 +22,66 @@ import mix.vm.*;
  *  and <CODE>instr</CODE> is the disassembled MIXAL instruction
  *  contained in the memory word.
  */
-public class MemoryView extends JTextArea
+public class MemoryView extends JList<String> implements MemoryObserver
 {
-    /** The number of character per line. Each line is 30
-     *  character long and has the following format:
-     *  <BLOCKQUOTE>
-     *    <CODE>
-     *      aaaa: s bb cc dd ee ff "BCDEF" instr x.xxxxx
-     *    </CODE>
-     *  </BLOCKQUOTE>
-     *  where <CODE>aaaa</CODE> is the location address (0000 to 3999),
-     *  <CODE>s</CODE> is a + or - sign, <CODE>bb</CODE> to <CODE>ff</CODE>
-     *  are the bytes that make up the memory word, and <CODE>"BCDEF"</CODE>
-     *  is the character-based representation of that memory word,
-     *  and <CODE>instr</CODE> is the disassembled MIXAL instruction
-     *  contained in the memory word.
+    /** The number of character per line, without the disassembled
+     *  instruction and the floating-point value.
      */
-    public final int LINE_SIZE = 31;
+    public final int LINE_SIZE = MemoryModel.LINE_SIZE;
 
     /** The number of characters for the disassembled MIXAL instruction
      *  contained in the memory word, which is appended at the end of
      *  each line.
      */
-    public final int COMMENT_SIZE = 23;
+    public final int COMMENT_SIZE = MemoryModel.COMMENT_SIZE;
     
     /** The number of characters for the floating-point representation of
      *  the memory word, which is appended past the disassembled MIXAL instruction.
      */
-    public final int FP_SIZE = 15;
+    public final int FP_SIZE = MemoryModel.FP_SIZE;
     
     /** Total size of a line. */
     public final int T_SIZE = LINE_SIZE + COMMENT_SIZE + FP_SIZE;
     
     /** The filler character. */
-    public final char FILLER =' ';
+    public final char FILLER = MemoryModel.FILLER;
     
     protected int location;
 	
     private MixIDE mixIde;
+
+    private final MemoryModel model;
+
+    /** The memory words changed since the last refresh, which may be
+     *  marked by the thread running the machine; guarded by itself.
+     */
+    private final boolean[] dirty = new boolean[MixVM.MEMORY_SIZE];
+
+    /** The range of addresses holding the changed words, empty if
+     *  from > to; guarded by dirty.
+     */
+    private int dirtyFrom = MixVM.MEMORY_SIZE, dirtyTo = -1;
+
+    /** Whether a refresh is scheduled on the event dispatch thread;
+     *  guarded by dirty.
+     */
+    private boolean scheduled;
 	
-    /** Create a new view of the memory contents of the given MIX virtual
-     *  machine.
+    /** Create a new view of the memory contents of the MIX virtual
+     *  machine of the given IDE. Only the lines which scroll into view
+     *  are ever formatted.
      */
     public MemoryView(MixIDE ide)
     {
             super();
             mixIde = ide;
+            model = new MemoryModel(this);
+            setModel(model);
             setFont(new Font("Monospaced", Font.PLAIN, 12));
-            MixWord zero = new MixWord(MixVM.REGISTER_WIDTH, 0);
-            for(int i = 0; i<MixVM.MEMORY_SIZE; i++)
-                    append(line(i, zero));
+            setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            // All the lines have the same size, so that none needs to be
+            // formatted to lay out the list:
+            setPrototypeCellValue(comment("", T_SIZE, 'M'));
             location = 0;
     }
 	
@@ -85,69 +95,115 @@ public class MemoryView extends JTextArea
     	return mixIde.getMixVM();
     }
 
-	/** Format a line. Each line is 30 character long and has the following format:
-	 *  <BLOCKQUOTE>
-	 *    <CODE>
-	 *      aaaa: s bb cc dd ee ff "BCDEF" istr x.xxx
-	 *    </CODE>
-	 *  </BLOCKQUOTE>
-	 *  where <CODE>aaaa</CODE> is the location address (0000 to 3999),
-	 *  <CODE>s</CODE> is a + or - sign, <CODE>bb</CODE> to <CODE>ff</CODE>
-	 *  are the bytes that make up the memory word, and <CODE>"BCDEF"</CODE>
-	 *  is the character-based representation of that memory word.
+	/** Mark a memory word as changed. The view reads the memory of the
+	 *  virtual machine, and shows the change at the next
+	 *  {@link #refresh refresh()}.
 	 */
-	private String line(int address, MixWord word)
+	public void update(int address)
 	{
-		String str = "";
-		
-		if(address<1000)
-			str += "0";
-		if(address<100)
-			str += "0";
-		if(address<10)
-			str += "0";
-		str += address + ": ";
-		str += word.sign()<0 ? "-" : "+";
-		for(int i = 0; i<word.size(); i++)
-		{
-			int b = word.getByte(i + 1).intValue();
-			str += " ";
-			if(b<10)
-				str += "0";
-			str += b;
-		}
-		str += " \"";
-		for(int i = 0; i<word.size(); i++)
-			str += MixChar.character(word.getByte(i + 1));
-		str += "\"" + comment(mix.asm.Opcode.decode(word), COMMENT_SIZE, FILLER);
-                str += comment(String.format("%e", word.doubleValue()), FP_SIZE, FILLER) + "\n";
-		
-		return str;
+            synchronized(dirty)
+            {
+                dirty[address] = true;
+                dirtyFrom = Math.min(dirtyFrom, address);
+                dirtyTo = Math.max(dirtyTo, address);
+            }
 	}
-	
-	/** Update the content of a memory word.
+
+	/** Mark every memory word as changed, e.g., after the whole memory
+	 *  has been loaded or the virtual machine has been replaced.
 	 */
-	public void update(int address, MixWord value)
+	public void update()
 	{
-            replaceRange(line(address, value), address*T_SIZE, (address + 1)*T_SIZE);
-            getMixVM().setMemoryValue(address, value);
+            synchronized(dirty)
+            {
+                java.util.Arrays.fill(dirty, true);
+                dirtyFrom = 0;
+                dirtyTo = MixVM.MEMORY_SIZE - 1;
+            }
 	}
         
         /**
-         * Set the caret position to the line corresponding the given address,
-         * so that the view scrolls to make that line visible.
+         * Select the line corresponding the given address, and scroll the
+         * view to make that line visible.
          */
         public void setCurrentAddress(int address)
         {
-            setCaretPosition(address*T_SIZE);
+            setSelectedIndex(address);
+            ensureIndexIsVisible(address);
+        }
+        
+        /**
+         * Return the address of the selected line.
+         */
+        public int getCurrentAddress()
+        {
+            return Math.max(getSelectedIndex(), 0);
         }
         
         /**
-         * Refresh the view on the screen.
+         * Refresh the view on the screen, repainting the lines of the words
+         * changed since the last refresh. It can be called from any thread:
+         * the lines are repainted on the event dispatch thread, at once if
+         * called from it.
          */
         public void refresh()
         {
-            paintImmediately(getVisibleRect());
+            if(SwingUtilities.isEventDispatchThread())
+            {
+                flush();
+                return;
+            }
+            synchronized(dirty)
+            {
+                if(scheduled)
+                    return;
+                scheduled = true;
+            }
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run()
+                {
+                    flush();
+                }
+            });
+        }
+
+        /**
+         * Forget the lines of the changed words, and repaint those which
+         * are visible.
+         */
+        private void flush()
+        {
+            int from, to;
+            int loc;
+            boolean[] changed;
+            synchronized(dirty)
+            {
+                scheduled = false;
+                from = dirtyFrom;
+                to = dirtyTo;
+                loc = location;
+                if(from>to)
+                    changed = null;
+                else
+                {
+                    changed = java.util.Arrays.copyOfRange(dirty, from, to + 1);
+                    java.util.Arrays.fill(dirty, from, to + 1, false);
+                }
+                dirtyFrom = MixVM.MEMORY_SIZE;
+                dirtyTo = -1;
+            }
+            if(changed!=null)
+                for(int i = from; i<=to; i++)
+                    if(changed[i - from])
+                        model.invalidate(i, i);
+            model.setLocation(loc);
+            if(loc<from)
+                from = loc;
+            if(loc>to)
+                to = loc;
+            Rectangle r = getCellBounds(from, to);
+            if(r!=null && (r = r.intersection(getVisibleRect())).height>0)
+                paintImmediately(r);
         }
 	
 	/** Update the location pointer.
@@ -157,10 +213,12 @@ public class MemoryView extends JTextArea
             if(address<0 || address>=MixVM.MEMORY_SIZE)
                 return;
 
-            replaceRange(" ", location*T_SIZE + 5, location*T_SIZE + 6);
-            location = address;
-            replaceRange("*", location*T_SIZE + 5, location*T_SIZE + 6);
-            // setCaretPosition(location*T_SIZE);
+            synchronized(dirty)
+            {
+                update(location);
+                location = address;
+                update(location);
+            }
 	}
 
     /** Formats the disassembled instruction at the end of a line.
@@ -5,10 +5,18 @@ import javax.swing.*;
 import javax.swing.filechooser.*;
 
 /** A filter for the file chooser to visualize MIX dump (image) files only.
- *  A MIX dump file is recognized by the extension ".dmp".
+ *  A MIX dump file is recognized by the extension ".dmp", a binary MIX
+ *  image file (see {@link mix.vm.MixImage}) by the extension ".mxi".
  */
 public class MixDumpFileFilter extends MixIDEFileFilter
 {
+    /** Check whether a file name denotes a binary MIX image file.
+     */
+    public static boolean isImage(File f)
+    {
+        return "mxi".equals(getExtension(f));
+    }
+
     /** Accept all directories and all MIX dump files.
      */
     public boolean accept(File f)
@@ -18,7 +26,7 @@ public class MixDumpFileFilter extends MixIDEFileFilter
 
         String extension = getExtension(f);
         if(extension!=null)
-            return extension.equals("dmp");
+            return extension.equals("dmp") || extension.equals("mxi");
 
         return false;
     }
@@ -27,6 +35,6 @@ public class MixDumpFileFilter extends MixIDEFileFilter
      */
     public String getDescription()
     {
-        return "MIX dump files";
+        return "MIX dump files (.dmp, .mxi)";
     }
 }
@@ -3,6 +3,7 @@ package mix.ide;
 import java.awt.event.*;
 import javax.swing.*;
 import java.io.*;
+import java.util.regex.*;
 import javax.help.*;
 
 import mix.vm.*;
@@ -16,11 +17,8 @@ import mix.edit.*;
  */
 public class MixIDE extends JFrame
 {
-    /** A reference to the one and only instance of this class. */
-    public static MixIDE mainFrame;
-    
-    /** A thread for executing the MIX machine. */
-    protected Process executionThread;
+    /** The controller executing the MIX machine in the background. */
+    protected Process process;
     
     /** The currently open MIXAL source file. */
     protected File srcFile;
@@ -46,6 +44,28 @@ public class MixIDE extends JFrame
     /** The MIX virtual machine. */
     protected MixVM mix;
 
+    /** The environment of the MIX machines and assemblers of the IDE,
+     *  which writes to the terminal view and reports errors in dialogs.
+     */
+    protected MixContext context;
+
+    /** The source line of each address of the last assembled program,
+     *  used to annotate the source with the execution profile.
+     */
+    protected int[] sourceLines;
+
+    /** The last snapshot of the state of the MIX machine, if any. */
+    protected Snapshot snapshot;
+
+    /** Whether the MIX machine is being profiled. */
+    protected JCheckBoxMenuItem vm_profile;
+
+    /** Whether the MIX machine records a journal, to step back. */
+    protected JCheckBoxMenuItem vm_journal;
+
+    /** Whether the I/O transfers of the MIX machine take time. */
+    protected JCheckBoxMenuItem vm_timing;
+
     /** The start address for executing the program. */
     protected int startAddress;
 
@@ -82,9 +102,9 @@ public class MixIDE extends JFrame
 	
     /**
      * Creates and initializes the main IDE frame with its components.
-     * This constructor is protected because this class is a singleton
-     * and the only one authorized to create one (and the only) instance
-     * of itself.
+     * The frame is created by {@link #main main()}; its components are
+     * given a reference to it, rather than finding it through a static
+     * instance.
      */
     protected MixIDE()
     {
@@ -94,11 +114,28 @@ public class MixIDE extends JFrame
             {
                 if(editor!=null)
                     editor.dispatchEvent(e);
+                if(mix!=null)
+                    mix.close();
                 dispose();
                 System.exit(0);
             }
         });
         initComponents();
+        context = MixContext.standard()
+            .withConsole(terminalView.getPrintStream())
+            .withReporter(new MixContext.Reporter()
+            {
+                public void report(final Exception e)
+                {
+                    if(SwingUtilities.isEventDispatchThread())
+                        runtimeError(e);
+                    else
+                        SwingUtilities.invokeLater(new Runnable()
+                        {
+                            public void run() { runtimeError(e); }
+                        });
+                }
+            });
         reset();
     }
 
@@ -110,15 +147,27 @@ public class MixIDE extends JFrame
     private void reset()
     {
         // Create a new clean MIX machine:
-        mix = new MixVM();
+        if(process!=null)
+            process.close();
+        else if(mix!=null)
+            mix.close();
+        mix = new MixVM(context, new PagedMemory());
+        process = new Process(mix, new Runnable()
+        {
+            public void run() { stopped(); }
+        });
 		
         mix.setView(memoryView);
         mix.setRegisterView(registerView);
+        if(vm_journal!=null && vm_journal.isSelected())
+            mix.setJournal(new Journal());
+        if(vm_profile!=null && vm_profile.isSelected())
+            mix.setProfiler(new Profiler());
+        if(vm_timing!=null && vm_timing.isSelected())
+            mix.setIOTiming(true);
         if(regMod != null)
             regMod.setVM(mix);
-        
-        // Connect the MIX machine to its terminal:
-        mix.setTerminal(terminalView);
+
 
         if(registerView!=null)
             registerView.update(mix);
@@ -196,6 +245,29 @@ public class MixIDE extends JFrame
         });
         vm.add(vm_halt); 
 
+        JMenuItem vm_pause = new JMenuItem("Pause");
+        vm_pause.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_P, InputEvent.CTRL_DOWN_MASK));
+        vm_pause.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { pause(); }
+        });
+        vm.add(vm_pause); 
+
+        JMenuItem vm_resume = new JMenuItem("Resume");
+        vm_resume.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { resume(); }
+        });
+        vm.add(vm_resume); 
+
+        JMenuItem vm_runto = new JMenuItem("Run to Cursor");
+        vm_runto.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F4, 0));
+        vm_runto.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { runToCursor(); }
+        });
+        vm.add(vm_runto); 
+
         JMenuItem vm_step = new JMenuItem("Step");
         vm_step.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, 0));
         vm_step.addActionListener(new ActionListener()
@@ -212,6 +284,64 @@ public class MixIDE extends JFrame
         });
         vm.add(vm_over);		
 
+        JMenuItem vm_back = new JMenuItem("Step back");
+        vm_back.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_B, 0));
+        vm_back.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { stepBack(1); }
+        });
+        vm.add(vm_back);
+
+        JMenuItem vm_backn = new JMenuItem("Step back...");
+        vm_backn.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { stepBack(); }
+        });
+        vm.add(vm_backn);
+
+        JMenuItem vm_runback = new JMenuItem("Run back");
+        vm_runback.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { runBack(); }
+        });
+        vm.add(vm_runback);
+
+        JMenuItem vm_break = new JMenuItem("Toggle Breakpoint");
+        vm_break.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F9, 0));
+        vm_break.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { toggleBreakpoint(); }
+        });
+        vm.add(vm_break);
+
+        JMenuItem vm_cond = new JMenuItem("Conditional Breakpoint...");
+        vm_cond.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { conditionalBreakpoint(); }
+        });
+        vm.add(vm_cond);
+
+        JMenuItem vm_watchw = new JMenuItem("Watch Writes...");
+        vm_watchw.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { watch(Breakpoints.WRITE); }
+        });
+        vm.add(vm_watchw);
+
+        JMenuItem vm_watchr = new JMenuItem("Watch Reads...");
+        vm_watchr.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { watch(Breakpoints.READ); }
+        });
+        vm.add(vm_watchr);
+
+        JMenuItem vm_clearbp = new JMenuItem("Clear Breakpoints");
+        vm_clearbp.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { clearBreakpoints(); }
+        });
+        vm.add(vm_clearbp);
+
         JMenuItem vm_reset = new JMenuItem("Reset...");
         vm_reset.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_X, InputEvent.ALT_DOWN_MASK));
         vm_reset.addActionListener(new ActionListener()
@@ -228,6 +358,72 @@ public class MixIDE extends JFrame
         });
         vm.add(vm_dump);
 
+        JMenuItem vm_snapshot = new JMenuItem("Take Snapshot");
+        vm_snapshot.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { takeSnapshot(); }
+        });
+        vm.add(vm_snapshot);
+
+        JMenuItem vm_restore = new JMenuItem("Restore Snapshot");
+        vm_restore.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { restoreSnapshot(); }
+        });
+        vm.add(vm_restore);
+
+        vm.addSeparator();
+
+        vm_profile = new JCheckBoxMenuItem("Profile");
+        vm_profile.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt)
+            {
+                mix.setProfiler(vm_profile.isSelected() ? new Profiler() : null);
+            }
+        });
+        vm.add(vm_profile);
+
+        vm_journal = new JCheckBoxMenuItem("Record Journal");
+        vm_journal.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt)
+            {
+                if(process.isRunning())
+                    vm_journal.setSelected(mix.getJournal()!=null);
+                else
+                    mix.setJournal(vm_journal.isSelected() ? new Journal() : null);
+            }
+        });
+        vm.add(vm_journal);
+
+        vm_timing = new JCheckBoxMenuItem("Time I/O");
+        vm_timing.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt)
+            {
+                if(process.isRunning())
+                    vm_timing.setSelected(!vm_timing.isSelected());
+                else
+                    mix.setIOTiming(vm_timing.isSelected());
+            }
+        });
+        vm.add(vm_timing);
+
+        JMenuItem vm_listing = new JMenuItem("Save Profile Listing...");
+        vm_listing.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { saveProfile(true); }
+        });
+        vm.add(vm_listing);
+
+        JMenuItem vm_csv = new JMenuItem("Save Profile CSV...");
+        vm_csv.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt) { saveProfile(false); }
+        });
+        vm.add(vm_csv);
+
         menuBar.add(vm);
 		
         // Set up the "I/O" menu with all its menu items:
@@ -464,7 +660,6 @@ public class MixIDE extends JFrame
         JScrollPane scrollPane = new JScrollPane(memoryView,
                 JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
                 JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
-        memoryView.setEditable(false);
         getContentPane().add(scrollPane);
 
         // ... Register View...
@@ -539,6 +734,8 @@ public class MixIDE extends JFrame
      */
     protected void modifyReg()
     {
+        if(process.isRunning())
+            return;
         if(regMod==null)
                 regMod = new RegModifier(registerView,mix); 
         else
@@ -553,6 +750,8 @@ public class MixIDE extends JFrame
      */
     protected void modify()
     {
+        if(process.isRunning())
+            return;
         if(rowMod==null)
             rowMod = new RowModifier(memoryView); 
     	else
@@ -619,7 +818,7 @@ public class MixIDE extends JFrame
             srcFile = sourceFile;
 
             // Create a new assembler session:
-            asm = new MixAssembler(in);	
+            asm = new MixAssembler(in, context);	
         }
         catch(FileNotFoundException e)
         {
@@ -665,7 +864,13 @@ public class MixIDE extends JFrame
             out = new PrintStream(new FileOutputStream(dumpFile));
 
             asmView.requestFocus();
-            asm.compile(out);
+            sourceLines = null;
+            if(MixDumpFileFilter.isImage(dumpFile))
+                asm.compile().write(out, true);
+            else
+                asm.compile(out, true);
+            out.close();
+            sourceLines = asm.getSourceLines();
         }
         catch(IOException ioe)
         {
@@ -699,6 +904,8 @@ public class MixIDE extends JFrame
      */
     protected void load(boolean reload)
     {
+        if(process.isRunning())
+            return;
         if(!reload || destFile==null)
         {
             // Have the user choose a program file
@@ -714,14 +921,14 @@ public class MixIDE extends JFrame
             destFile = imageFile;
             String fileName = imageFile.getName();
             System.out.println("Loading file " + fileName);
-            InputStream in = new FileInputStream(imageFile);
             // Disconnect the MIX machine from the memory view:
             mix.setView(null);
-            startAddress = mix.load(in);
+            startAddress = mix.load(imageFile);
             if(startAddress==3999)
                     startAddress = 0;
             mix.setView(memoryView);    // Reconnect to the memory view
             memoryView.setLocationPointer(startAddress);
+            memoryView.refresh();
             memoryView.setCurrentAddress(startAddress);
             mix.halt();
         }
@@ -745,11 +952,16 @@ public class MixIDE extends JFrame
      */
     protected void attach(int unit)
     {
-            // Have the user choose a file
-            chooser.setFileFilter(chooser.getAcceptAllFileFilter());
+        if(process.isRunning())
+            return;
+        // Have the user choose a file
+        chooser.setFileFilter(chooser.getAcceptAllFileFilter());
         int returnVal = chooser.showOpenDialog(this);
         if(returnVal != JFileChooser.APPROVE_OPTION)
             return;
+        if(unit<16) // tapes and disks
+            mix.attachMapped(unit, chooser.getSelectedFile());
+        else
             mix.attach(unit, chooser.getSelectedFile());
     }
 	
@@ -760,14 +972,47 @@ public class MixIDE extends JFrame
      */
     protected void run()
     {
-        if(executionThread!=null)
-            if(executionThread.isAlive())
-                return;
+        if(process.isRunning())
+            return;
         // Execute the program:
         if(mix.isHalted())
             mix.start(startAddress);
-        executionThread = new Process(mix);
-        executionThread.start();
+        setModifiersEnabled(false);
+        process.run();
+    }
+        
+    /**
+     * Run the MIX machine up to the address of the line where the caret
+     * of the memory view is.
+     */
+    protected void runToCursor()
+    {
+        if(process.isRunning())
+            return;
+        if(mix.isHalted())
+            mix.start(startAddress);
+        setModifiersEnabled(false);
+        process.runTo(memoryView.getCurrentAddress());
+    }
+        
+    /**
+     * Pause execution of the MIX machine, at the next instruction boundary
+     * reached by the background thread.
+     */
+    protected void pause()
+    {
+        process.pause();
+    }
+        
+    /**
+     * Resume the execution of the MIX machine after a pause.
+     */
+    protected void resume()
+    {
+        if(process.isRunning() || mix.isHalted())
+            return;
+        setModifiersEnabled(false);
+        process.resume();
     }
         
     /**
@@ -775,16 +1020,37 @@ public class MixIDE extends JFrame
      */
     protected void stop()
     {
-        mix.halt();
+        process.stop();
+        memoryView.setCurrentAddress(mix.getLocationPtr().intValue());
+    }
+        
+    /**
+     * Called on the event dispatch thread when a run ends, to show
+     * where the MIX machine stopped.
+     */
+    protected void stopped()
+    {
+        setModifiersEnabled(true);
         memoryView.setCurrentAddress(mix.getLocationPtr().intValue());
     }
 
+    /** Enable or disable the open windows which modify the memory and the
+     *  registers, since they must not write to the machine during a run.
+     */
+    private void setModifiersEnabled(boolean b)
+    {
+        if(rowMod!=null)
+            rowMod.setEnabled(b);
+        if(regMod!=null)
+            regMod.setEnabled(b);
+    }
+
     /**
      * Reports a runtime error.
      */
-    public static void runtimeError(Exception e)
+    public void runtimeError(Exception e)
     {
-        JOptionPane.showMessageDialog(mainFrame,
+        JOptionPane.showMessageDialog(this,
             e.toString(),
             "Runtime Error",
             JOptionPane.ERROR_MESSAGE);
@@ -798,13 +1064,12 @@ public class MixIDE extends JFrame
      */
     protected void step()
     {
+            if(process.isRunning())
+                return;
             if(mix.isHalted())
                 mix.start(startAddress);
             try
             {
-                if(executionThread!=null)
-                    if(executionThread.isAlive())
-                        return;
                 mix.step();
                 memoryView.setCurrentAddress(mix.getLocationPtr().intValue());
             }
@@ -814,32 +1079,273 @@ public class MixIDE extends JFrame
             }
     }
 	
-    /** Execute all instructions up to the next address.
-     *  This method provides a kind of "step over" functionality.
+    /** Execute all instructions up to the next address, in the
+     *  background. This method provides a kind of "step over"
+     *  functionality.
      */
     protected void over()
     {
-        int breakpoint;
-
+        if(process.isRunning())
+            return;
         if(mix.isHalted())
             mix.start(startAddress);
-        breakpoint = (mix.getLocationPtr().intValue() + 1) % mix.MEMORY_SIZE;
+        setModifiersEnabled(false);
+        process.stepOver();
+    }
+	
+    /** Undo the given number of instructions, as recorded by the journal
+     *  of the virtual machine.
+     */
+    protected void stepBack(int n)
+    {
+        if(process.isRunning() || !checkJournal())
+            return;
+        if(mix.stepBack(n)==0)
+        {
+            JOptionPane.showMessageDialog(this,
+                "No instruction to undo.",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        memoryView.setCurrentAddress(mix.getLocationPtr().intValue());
+    }
+
+    /** Ask for a number of instructions, and undo them.
+     */
+    protected void stepBack()
+    {
+        if(process.isRunning() || !checkJournal())
+            return;
+        String s = JOptionPane.showInputDialog(this,
+            "Number of instructions to undo:", "1");
+        if(s==null)
+            return;
         try
         {
-            if(executionThread!=null)
-                if(executionThread.isAlive())
-                    return;
-            while(mix.getLocationPtr().intValue()!=breakpoint)
-                mix.step();
-            memoryView.setCurrentAddress(breakpoint);
+            stepBack(Integer.parseInt(s.trim()));
         }
-        // catch(RuntimeException e) {throw e;}
-        catch(Exception e)
+        catch(NumberFormatException e)
+        {
+            JOptionPane.showMessageDialog(this,
+                "Invalid number: " + s,
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /** Undo instructions back to the last point where a breakpoint or
+     *  watchpoint stopped, or would have stopped, the MIX machine.
+     */
+    protected void runBack()
+    {
+        if(process.isRunning() || !checkJournal())
+            return;
+        if(mix.runBack()==0)
         {
-            runtimeError(e);
+            JOptionPane.showMessageDialog(this,
+                "No instruction to undo.",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        memoryView.setCurrentAddress(mix.getLocationPtr().intValue());
+    }
+
+    /** Check that the MIX machine records a journal, telling the user
+     *  how to have it recorded if not.
+     */
+    private boolean checkJournal()
+    {
+        if(mix.getJournal()!=null)
+            return true;
+        JOptionPane.showMessageDialog(this,
+            "Stepping back requires a journal: select Record Journal\n" +
+            "in the MIX menu, and run the program again.",
+            "Error",
+            JOptionPane.ERROR_MESSAGE);
+        return false;
+    }
+
+    /** Set or remove an execution breakpoint at the current address of
+     *  the memory view.
+     */
+    protected void toggleBreakpoint()
+    {
+        if(process.isRunning())
+            return;
+        Breakpoints bp = mix.getBreakpoints();
+        int address = memoryView.getCurrentAddress();
+        if(bp.isSet(address))
+            bp.clear(address);
+        else
+            bp.set(address);
+    }
+
+    /** Remove all the breakpoints and watchpoints.
+     */
+    protected void clearBreakpoints()
+    {
+        if(process.isRunning())
+            return;
+        mix.getBreakpoints().clear();
+    }
+
+    /** The syntax of a breakpoint condition, e.g., <CODE>rI1 &lt; 10</CODE>. */
+    private static final Pattern CONDITION =
+        Pattern.compile("\\s*r?(A|X|J|I[1-6])\\s*(<=|>=|!=|==|=|<|>)\\s*([+-]?\\d+)\\s*", Pattern.CASE_INSENSITIVE);
+
+    /** Ask for a condition on a register, and set a breakpoint at the
+     *  current address of the memory view which stops when it holds.
+     */
+    protected void conditionalBreakpoint()
+    {
+        if(process.isRunning())
+            return;
+        int address = memoryView.getCurrentAddress();
+        String s = JOptionPane.showInputDialog(this,
+            "Stop at " + address + " when (e.g., rI1 < 10):", "rA = 0");
+        if(s==null)
+            return;
+        Matcher m = CONDITION.matcher(s);
+        if(!m.matches())
+        {
+            JOptionPane.showMessageDialog(this,
+                "Invalid condition: " + s,
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        String r = m.group(1).toUpperCase();
+        int register = r.equals("A") ? 0 : r.equals("X") ? 7 : r.equals("J") ? 8 : r.charAt(1) - '0';
+        String op = m.group(2);
+        int relation = op.equals("<") ? Breakpoints.Compare.LESS
+            : op.equals(">") ? Breakpoints.Compare.GREATER
+            : op.equals("<=") ? Breakpoints.Compare.LESS | Breakpoints.Compare.EQUAL
+            : op.equals(">=") ? Breakpoints.Compare.GREATER | Breakpoints.Compare.EQUAL
+            : op.equals("!=") ? Breakpoints.Compare.LESS | Breakpoints.Compare.GREATER
+            : Breakpoints.Compare.EQUAL;
+        mix.getBreakpoints().set(address, new Breakpoints.Compare(register, relation,
+            Integer.parseInt(m.group(3).replace("+", ""))));
+    }
+
+    /** Ask for a field, and watch it in the word at the current address of
+     *  the memory view for the given access mode; an empty field removes
+     *  the watchpoint.
+     */
+    protected void watch(int mode)
+    {
+        if(process.isRunning())
+            return;
+        int address = memoryView.getCurrentAddress();
+        String s = JOptionPane.showInputDialog(this,
+            "Field of word " + address + " to watch (L:R):", "0:5");
+        if(s==null)
+            return;
+        Breakpoints bp = mix.getBreakpoints();
+        s = s.trim();
+        if(s.length()==0)
+        {
+            bp.unwatch(address);
+            return;
+        }
+        int colon = s.indexOf(':');
+        try
+        {
+            int left = Integer.parseInt(s.substring(0, colon).trim());
+            int right = Integer.parseInt(s.substring(colon + 1).trim());
+            if(left<0 || left>right || right>5)
+                throw new NumberFormatException();
+            bp.watch(address, new FieldSpecification(left, right), bp.getWatchMode(address) | mode);
+        }
+        catch(RuntimeException e)
+        {
+            JOptionPane.showMessageDialog(this,
+                "Invalid field: " + s,
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /** Take a snapshot of the state of the MIX machine, to be restored
+     *  later to run the program again from this point.
+     */
+    protected void takeSnapshot()
+    {
+        if(process.isRunning())
+            return;
+        snapshot = mix.snapshot();
+    }
+
+    /** Restore the state of the MIX machine from the last snapshot.
+     */
+    protected void restoreSnapshot()
+    {
+        if(process.isRunning())
+            return;
+        if(snapshot==null)
+        {
+            JOptionPane.showMessageDialog(this,
+                "No snapshot has been taken.",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        mix.restore(snapshot);
+        memoryView.setCurrentAddress(mix.getLocationPtr().intValue());
     }
 	
+    /** Save the execution profile, either as the MIXAL source program
+     *  annotated with execution counts and cycles, or as comma-separated
+     *  values.
+     */
+    protected void saveProfile(boolean listing)
+    {
+        Profiler profiler = mix.getProfiler();
+        if(profiler==null)
+        {
+            JOptionPane.showMessageDialog(this,
+                "Profiling is not enabled.",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if(listing && (srcFile==null || sourceLines==null))
+        {
+            JOptionPane.showMessageDialog(this,
+                "The listing requires a program compiled in this session.",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        chooser.setFileFilter(chooser.getAcceptAllFileFilter());
+        if(srcFile!=null)
+            chooser.setSelectedFile(new File(MixIDEFileFilter.getRootName(srcFile) + (listing ? ".lst" : ".csv")));
+        int returnVal = chooser.showSaveDialog(this);
+        if(returnVal != JFileChooser.APPROVE_OPTION)
+            return;
+        try
+        {
+            PrintStream out = new PrintStream(new FileOutputStream(chooser.getSelectedFile()));
+            if(listing)
+            {
+                BufferedReader in = new BufferedReader(new FileReader(srcFile));
+                profiler.writeListing(in, sourceLines, out);
+                in.close();
+            }
+            else
+                profiler.writeCSV(out);
+            out.close();
+        }
+        catch(IOException ioe)
+        {
+            JOptionPane.showMessageDialog(this,
+                ioe.toString(),
+                "I/O Error",
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     /** Dump the memory configuration to a file.
      */
     protected void dump()
@@ -856,7 +1362,11 @@ public class MixIDE extends JFrame
                     String fileName = dumpFile.getName();
                     System.out.println("Dumping to file " + fileName);
                     PrintStream out = new PrintStream(new FileOutputStream(dumpFile));
-                    mix.dump(out);
+                    if(MixDumpFileFilter.isImage(dumpFile))
+                        mix.image(-1, null).write(out, true);
+                    else
+                        mix.dump(out, true);
+                    out.close();
             }
             catch(IOException ioe)
             {
@@ -892,11 +1402,23 @@ public class MixIDE extends JFrame
     {
         System.out.println("Starting MIX IDE v. " + version + "...");
 
-        // Create the one and only instance of the IDE:
-        mainFrame = new MixIDE();
-        mainFrame.setSize(512, 600);
-        mainFrame.setTitle("MIX IDE v. " + version);
-        mainFrame.setVisible(true);
+        try
+        {
+            OpcodeTable.standard();
+        }
+        catch(IllegalStateException e)
+        {
+            JOptionPane.showMessageDialog(null,
+                e.getMessage(),
+                "Opcode table not found: the Assembler will not work.",
+                JOptionPane.ERROR_MESSAGE);
+        }
+
+        // Create the IDE frame:
+        MixIDE ide = new MixIDE();
+        ide.setSize(512, 600);
+        ide.setTitle("MIX IDE v. " + version);
+        ide.setVisible(true);
         System.out.println("started.");
     }    
 }
@@ -9,33 +9,217 @@
 
 package mix.ide;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+import mix.vm.Breakpoints;
 import mix.vm.MixVM;
 
 /**
- * A thread used to run the MIX machine as a separate process.
+ * The controller of the execution of the MIX machine, which runs it as a
+ * separate process, in a background thread, so that the user interface
+ * stays responsive.
+ *
+ * <P>A run goes on until the machine halts, stops on a breakpoint or
+ * reaches the target of a run-to, or until it is paused: the pause request
+ * is a volatile control word of the machine, polled every few thousand
+ * instructions, so the machine always stops at an instruction boundary.
+ * The views are updated once, when the run ends, and the listener given
+ * to the constructor is then called on the event dispatch thread, after
+ * reporting the error which ended the run, if any, to the context of the
+ * machine.</P>
  *
  * @author Andrea G. B. Tettamanzi
  */
-public class Process extends Thread
+public class Process
 {
+    /** The states of the controller. */
+    public static final int IDLE = 0, RUNNING = 1, PAUSING = 2;
+
     protected MixVM mix;
-    
-    /** Creates a new process to run the given MIX virtual machine. */
-    public Process(MixVM vm)
+
+    /** The state of the controller, written by both threads. */
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+
+    /** The thread of the run in progress, if any. */
+    private Thread worker;
+
+    /** Called on the event dispatch thread whenever a run ends. */
+    private final Runnable listener;
+
+    /** Set by {@link #stop stop()}, so that a run which does not pause in
+     *  time halts the machine when it ends; guarded by this controller.
+     */
+    private boolean stopping;
+
+    /** Set by {@link #close close()}: a run then ending closes the machine
+     *  and does not call the listener.
+     */
+    private volatile boolean closed;
+
+    /** How long {@link #stop stop()} waits for the run to pause, in ms. */
+    private static final long STOP_TIMEOUT = 1000;
+
+    /** Creates a new controller of the given MIX virtual machine. */
+    public Process(MixVM vm, Runnable listener)
     {
         mix = vm;
+        this.listener = listener;
+    }
+
+    /** Checks whether a run is in progress. */
+    public boolean isRunning()
+    {
+        return state.get()!=IDLE;
     }
-    
-    /** Runs the MIX virtual machine in a separate thread. */
+
+    /** Runs the machine from the current location. */
     public void run()
     {
-        try
+        start(-1);
+    }
+
+    /** Resumes a paused run; this is the same as {@link #run run()}, since
+     *  a pause leaves the machine ready to go on.
+     */
+    public void resume()
+    {
+        start(-1);
+    }
+
+    /** Runs the machine until the location pointer reaches the given
+     *  address, or it stops for another reason.
+     */
+    public void runTo(int address)
+    {
+        start(address);
+    }
+
+    /** Runs the machine until it reaches the instruction following the
+     *  current one, thereby stepping over subroutine calls.
+     */
+    public void stepOver()
+    {
+        runTo((mix.getLocationPtr().intValue() + 1) % MixVM.MEMORY_SIZE);
+    }
+
+    /** Asks the run in progress, if any, to pause. */
+    public void pause()
+    {
+        if(state.compareAndSet(RUNNING, PAUSING))
+            mix.pause();
+    }
+
+    /** Pauses the run in progress, if any, waiting for it to end, and
+     *  halts the machine. A run which does not pause in time, e.g., waiting
+     *  for input, is interrupted, and halts the machine itself when it ends.
+     */
+    public void stop()
+    {
+        Thread t = worker;
+        synchronized(this)
+        {
+            stopping = true;
+        }
+        pause();
+        if(t!=null)
+        {
+            try
+            {
+                t.join(STOP_TIMEOUT);
+                if(t.isAlive())
+                {
+                    t.interrupt();
+                    t.join(STOP_TIMEOUT);
+                }
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized(this)
+        {
+            if(!isRunning())
+                mix.halt();
+        }
+    }
+
+    /** Stops the machine, as {@link #stop stop()} does, and closes it, for
+     *  good: the views are detached at once, and the listener is no longer
+     *  called.
+     */
+    public void close()
+    {
+        closed = true;
+        mix.detachViews();
+        stop();
+        synchronized(this)
         {
-            mix.run();
+            if(!isRunning())
+                mix.close();
         }
-        catch(Exception ex)
+    }
+
+    /** Starts a run in a new thread, with a temporary breakpoint at the
+     *  given address, unless negative.
+     */
+    private void start(final int target)
+    {
+        if(closed || !state.compareAndSet(IDLE, RUNNING))
+            return;
+        synchronized(this)
         {
-            MixIDE.runtimeError(ex);
+            stopping = false;
         }
+        // Cleared here, not by the worker, so that a pause made before
+        // the worker reaches runFast() is not lost:
+        mix.clearPause();
+        final Breakpoints bp = mix.getBreakpoints();
+        final boolean temporary = target>=0 && !bp.isSet(target);
+        if(temporary)
+            bp.set(target);
+        worker = new Thread("MIX") {
+            public void run()
+            {
+                Exception error = null;
+                try
+                {
+                    mix.runFast(Long.MAX_VALUE);
+                }
+                catch(Exception ex)
+                {
+                    error = ex;
+                }
+                finally
+                {
+                    if(temporary)
+                        bp.clear(target);
+                    synchronized(Process.this)
+                    {
+                        if(stopping)
+                            mix.halt();
+                        if(closed)
+                            mix.close();
+                        state.set(IDLE);
+                    }
+                }
+                if(closed)
+                    return;
+                final Exception e = error;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run()
+                    {
+                        if(closed)
+                            return;
+                        if(e!=null)
+                            mix.getContext().report(e);
+                        if(listener!=null)
+                            listener.run();
+                    }
+                });
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
     }
 }
@@ -1,6 +1,8 @@
 package mix.ide;
 
 import java.awt.*;
+import java.awt.event.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.*;
 import mix.vm.*;
 
@@ -12,9 +14,33 @@ import mix.vm.*;
  * <p>This is a quick-and-dirty implementation. It would be nice to
  * design and implement a graphical representation of the internal
  * status of the MIX machine.</p>
+ *
+ * <p>The virtual machine only marks the registers as changed, which is
+ * cheap enough to be done after every instruction; a timer then shows
+ * the registers of the machine at most {@link #RATE} times per second,
+ * on the event dispatch thread. A machine running in the background
+ * samples its registers only when the view is not waiting to be
+ * refreshed.</p>
  */
-public class RegisterView extends JTextArea
+public class RegisterView extends JTextArea implements RegisterObserver
 {
+    /** The highest number of refreshes per second. */
+    public static final int RATE = 30;
+
+    /** The machine whose registers changed since the last refresh. */
+    private volatile MixVM mix;
+
+    /** Whether the registers changed since the last refresh. */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /** The registers as sampled by a running machine, or null if they
+     *  are to be read when refreshing.
+     */
+    private volatile String text;
+
+    /** The timer which refreshes the view once the registers changed. */
+    private final Timer timer;
+
     public RegisterView()
     {
         super();
@@ -26,32 +52,90 @@ public class RegisterView extends JTextArea
         for(int i = 1; i<=6; i++)
                 append("I" + i + " = " + zero + " = 0\n");
         append("J" + " = " + zero + " = 0\n");
+        timer = new Timer(1000/RATE, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                refresh();
+            }
+        });
+        timer.setRepeats(false);
     }
 
+    /** Mark the registers of the given machine as changed; they are
+     *  read when the view is refreshed, within 1/{@link #RATE} second.
+     *  This can be called from any thread, once the machine has stopped.
+     */
     public void update(MixVM mix)
     {
-        String text = "OV = " + (mix.getOV() ? "ON" : "OFF") +
-                    ", CMP = '";
+        changed(mix, null);
+    }
+
+    /** Read the registers of a machine running in the current thread,
+     *  between two instructions, to show them at the next refresh.
+     */
+    public void sample(MixVM mix)
+    {
+        changed(mix, format(mix));
+    }
+
+    private void changed(MixVM mix, String text)
+    {
+        this.mix = mix;
+        this.text = text;
+        if(!dirty.get() && dirty.compareAndSet(false, true))
+            timer.start();
+    }
+
+    /** Check whether the view is waiting to be refreshed; a machine
+     *  running in another thread needs not update it until it is not.
+     */
+    public boolean isDirty()
+    {
+        return dirty.get();
+    }
+
+    /** Show the registers last marked as changed.
+     */
+    private void refresh()
+    {
+        dirty.set(false);
+        String t = text;
+        MixVM mix = this.mix;
+        if(t==null && mix!=null)
+            t = format(mix);
+        if(t!=null)
+            setText(t);
+    }
+
+    /** Format the registers of a machine.
+     */
+    private static String format(MixVM mix)
+    {
+        StringBuilder text = new StringBuilder(256);
+        text.append("OV = ").append(mix.getOV() ? "ON" : "OFF").append(", CMP = '");
 
         int cmp = mix.getCmp();              
         if(cmp<0)
-                text += "<";
+                text.append('<');
         else if(cmp==0)
-                text += "=";
+                text.append('=');
         else
-                text += ">";
+                text.append('>');
 
-        text += "', clock = " + mix.clock() + "\n";
+        text.append("', clock = ").append(mix.clock()).append('\n');
 
-        text += "A = " + mix.getAccumulator() +
-                    ", X = " + mix.getExtension() + "\n";
+        text.append("A = ").append(mix.getAccumulator())
+                .append(", X = ").append(mix.getExtension()).append('\n');
         for(int i = 1; i<=6; i++)
-                text += "I" + i + " = " + mix.getIndexRegister(i) +
-                        " = " + mix.getIndexRegister(i).intValue() + "\n";
-        text += "J = " + mix.getJumpRegister() +
-                " = " + mix.getJumpRegister().intValue() + "\n";
-        setText(text);
-        paintImmediately(getVisibleRect());
+        {
+                MixWord r = mix.getIndexRegister(i);
+                text.append('I').append(i).append(" = ").append(r)
+                        .append(" = ").append(r.intValue()).append('\n');
+        }
+        MixWord j = mix.getJumpRegister();
+        text.append("J = ").append(j).append(" = ").append(j.intValue()).append('\n');
+        return text.toString();
     }
 
 }
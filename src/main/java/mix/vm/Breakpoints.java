@@ -0,0 +1,324 @@
+package mix.vm;
+
+import java.util.*;
+
+/** The breakpoints and watchpoints of a MIX virtual machine, as returned
+ *  by {@link MixVM#getBreakpoints MixVM.getBreakpoints()}.
+ *
+ *  <P>An execution breakpoint stops the machine before it executes the
+ *  instruction at its address, provided its {@link Condition}, if any,
+ *  holds. A watchpoint stops the machine before it executes an instruction
+ *  which reads or writes a field of the watched memory word overlapping
+ *  the watched field. A run resumed where the machine stopped executes
+ *  that instruction without stopping again; single steps never stop.</P>
+ *
+ *  <P>The interpreter tests only the instructions flagged in its
+ *  {@link DecodeCache}: those at the address of a breakpoint and, while
+ *  some word is watched, those which access memory. When no breakpoint is
+ *  set, no instruction is flagged, and execution runs at full speed.</P>
+ */
+public class Breakpoints
+{
+	/** The access modes of a watchpoint. */
+	public static final int READ = 1, WRITE = 2;
+
+	/** The condition of a breakpoint, tested on the state of the machine
+	 *  before it executes the instruction.
+	 */
+	public interface Condition
+	{
+		boolean test(MixVM mix);
+	}
+
+	/** A condition comparing the value of a register with a constant.
+	 */
+	public static class Compare implements Condition
+	{
+		/** The relations, which can be combined, e.g., LESS | EQUAL. */
+		public static final int LESS = 1, EQUAL = 2, GREATER = 4;
+
+		private final int register;
+		private final int relation;
+		private final int value;
+
+		/** Create a condition on the given register, numbered as in the
+		 *  C field of the load instructions (0 for rA, 1 to 6 for rI1 to
+		 *  rI6, 7 for rX) or 8 for rJ.
+		 */
+		public Compare(int register, int relation, int value)
+		{
+			if(register<0 || register>8)
+				throw new IllegalArgumentException("Invalid register: " + register);
+			this.register = register;
+			this.relation = relation;
+			this.value = value;
+		}
+
+		public boolean test(MixVM mix)
+		{
+			int v = register==8 ? PackedWord.intValue(mix.rJ) : OperationTable.value(mix, register);
+			return (relation & (v<value ? LESS : v==value ? EQUAL : GREATER))!=0;
+		}
+	}
+
+	/** One bit per address with an execution breakpoint. */
+	private final long[] bits = new long[(MixVM.MEMORY_SIZE + 63)/64];
+
+	/** The conditions of the conditional breakpoints. */
+	private final Map<Integer, Condition> conditions = new HashMap<Integer, Condition>();
+
+	/** The watched field and access modes of each memory word, as
+	 *  8L + R + 64*mode, or 0.
+	 */
+	private final int[] watched = new int[MixVM.MEMORY_SIZE];
+
+	private int nBreakpoints;
+	private int nWatchpoints;
+
+	/** The decode cache whose entries are flagged. */
+	private final DecodeCache decoded;
+
+	/** The address of the breakpoint or watched word where the machine
+	 *  last stopped, or -1.
+	 */
+	private int hit = -1;
+
+	/** The address of the instruction that the run being resumed executes
+	 *  first, without stopping, or -1.
+	 */
+	private int resume = -1;
+
+	Breakpoints(DecodeCache decoded)
+	{
+		this.decoded = decoded;
+		decoded.breakpoints = this;
+	}
+
+	/** Set an execution breakpoint at the given address.
+	 */
+	public void set(int address)
+	{
+		set(address, null);
+	}
+
+	/** Set an execution breakpoint at the given address, which stops the
+	 *  machine only when the given condition holds, or always if it is
+	 *  null.
+	 */
+	public void set(int address, Condition c)
+	{
+		if(!isSet(address))
+		{
+			bits[address >> 6] |= 1L << address;
+			nBreakpoints++;
+		}
+		if(c!=null)
+			conditions.put(address, c);
+		else
+			conditions.remove(address);
+		decoded.invalidate(address);
+	}
+
+	/** Remove the execution breakpoint at the given address, if any.
+	 */
+	public void clear(int address)
+	{
+		if(!isSet(address))
+			return;
+		bits[address >> 6] &= ~(1L << address);
+		nBreakpoints--;
+		conditions.remove(address);
+		decoded.invalidate(address);
+	}
+
+	/** Check whether there is an execution breakpoint at the given address.
+	 */
+	public boolean isSet(int address)
+	{
+		return (bits[address >> 6] & 1L << address)!=0;
+	}
+
+	/** Return the condition of the breakpoint at the given address, or
+	 *  null if it has none.
+	 */
+	public Condition getCondition(int address)
+	{
+		return conditions.get(address);
+	}
+
+	/** Watch a field of a memory word for the given access modes, a
+	 *  combination of READ and WRITE, replacing any watchpoint it had.
+	 */
+	public void watch(int address, FieldSpecification field, int mode)
+	{
+		mode &= READ | WRITE;
+		if(mode==0)
+		{
+			unwatch(address);
+			return;
+		}
+		if(watched[address]==0)
+			nWatchpoints++;
+		watched[address] = 8*field.first() + field.last() + 64*mode;
+		// Every instruction accessing memory must be flagged:
+		decoded.invalidate();
+	}
+
+	/** Stop watching a memory word.
+	 */
+	public void unwatch(int address)
+	{
+		if(watched[address]==0)
+			return;
+		watched[address] = 0;
+		nWatchpoints--;
+		decoded.invalidate();
+	}
+
+	/** Return the access modes for which a memory word is watched, or 0.
+	 */
+	public int getWatchMode(int address)
+	{
+		return watched[address] >> 6;
+	}
+
+	/** Return the watched field of a memory word, or null.
+	 */
+	public FieldSpecification getWatchField(int address)
+	{
+		return watched[address]==0 ? null : new FieldSpecification(watched[address] & 63);
+	}
+
+	/** Remove all the breakpoints and watchpoints.
+	 */
+	public void clear()
+	{
+		Arrays.fill(bits, 0);
+		Arrays.fill(watched, 0);
+		conditions.clear();
+		nBreakpoints = nWatchpoints = 0;
+		decoded.invalidate();
+	}
+
+	/** Check whether there is no breakpoint nor watchpoint.
+	 */
+	public boolean isEmpty()
+	{
+		return nBreakpoints==0 && nWatchpoints==0;
+	}
+
+	/** Return the address of the breakpoint or watched word where the
+	 *  machine stopped at the end of the last run, or -1 if it did not
+	 *  stop on a breakpoint.
+	 */
+	public int getHit()
+	{
+		return hit;
+	}
+
+	/** Prepare to resume execution at the given address.
+	 */
+	void resume(int address)
+	{
+		resume = address;
+		hit = -1;
+	}
+
+	/** Check whether the decoded instruction at the given address must be
+	 *  tested before it is executed.
+	 */
+	boolean flagged(int address, int op)
+	{
+		return isSet(address) || nWatchpoints>0 && accesses(op & (OperationTable.SIZE - 1));
+	}
+
+	/** Check whether an operation may access memory.
+	 */
+	private static boolean accesses(int C)
+	{
+		return (C>=1 && C<=4) || (C>=7 && C<=33) || C==36 || C==37 || C>=56;
+	}
+
+	/** Check whether the machine must stop before executing the flagged
+	 *  instruction at the given address, with the given decoded operation
+	 *  and address field; the instruction where a run resumes is skipped.
+	 */
+	boolean check(MixVM mix, int address, int op, int a)
+	{
+		if(address==resume)
+		{
+			resume = -1;
+			return false;
+		}
+		return test(mix, address, op, a);
+	}
+
+	/** Check whether a breakpoint or watchpoint stops the machine before
+	 *  it executes the given instruction, recording the hit.
+	 */
+	boolean test(MixVM mix, int address, int op, int a)
+	{
+		if(isSet(address))
+		{
+			Condition c = conditions.get(address);
+			if(c==null || c.test(mix))
+			{
+				hit = address;
+				return true;
+			}
+		}
+		if(nWatchpoints>0)
+		{
+			int w = watch(mix, op, a);
+			if(w>=0)
+			{
+				hit = w;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Return the first watched word accessed by an instruction, or -1.
+	 */
+	private int watch(MixVM mix, int op, int a)
+	{
+		int C = op & (OperationTable.SIZE - 1);
+		int F = (op >> 6) & MixByte.MAX_VALUE;
+		int M = a + mix.index((op >> 12) & MixByte.MAX_VALUE);
+		if((C>=1 && C<=4) || (C>=8 && C<=23) || C>=56)
+			return watch(M, 1, F==6 && (C<=4 || C>=56) ? 5 : F, READ);
+		if(C>=24 && C<=33)
+			return watch(M, 1, F, WRITE);
+		if(C==7) // MOVE
+		{
+			int w = watch(M, F, 5, READ);
+			return w>=0 ? w : watch(mix.index(1), F, 5, WRITE);
+		}
+		IOUnit u = mix.unit(F);
+		if(u==null)
+			return -1;
+		return watch(M, u.getBlockSize(), 5, C==36 ? WRITE : READ);
+	}
+
+	/** Return the first of n words from the given address whose watched
+	 *  field overlaps the given field, for the given access mode, or -1.
+	 */
+	private int watch(int address, int n, int fspec, int mode)
+	{
+		int L = fspec/8;
+		int R = fspec%8;
+		if(L>R || R>5)
+		{
+			L = 0;
+			R = 5;
+		}
+		for(int i = Math.max(address, 0); i<address + n && i<MixVM.MEMORY_SIZE; i++)
+		{
+			int w = watched[i];
+			if((w >> 6 & mode)!=0 && (w & 63)/8<=R && L<=(w & 7))
+				return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,81 @@
+package mix.vm;
+
+import java.util.Arrays;
+
+/** A cache of decoded instructions, indexed by memory address.
+ *  Each memory word is decoded into its C, F, I fields and sign, packed
+ *  into a single <CODE>int</CODE>, and into the (signed) value of its
+ *  address field, so that the interpreter loop decodes each word only
+ *  once, no matter how many times it is executed.
+ *
+ *  <P>An entry must be invalidated whenever the corresponding memory word
+ *  is written, so that self-modifying code keeps working, and whenever
+ *  its {@link #BREAK} flag may change.</P>
+ */
+final class DecodeCache
+{
+	/** The marker of an entry which has not been decoded yet. */
+	static final int INVALID = -1;
+	
+	/** The sign flag of a decoded operation. */
+	static final int NEGATIVE = 1 << 18;
+	
+	/** The flag of a decoded operation which must be checked against the
+	 *  breakpoints before it is executed.
+	 */
+	static final int BREAK = 1 << 19;
+	
+	/** The decoded operations: C | F &lt;&lt; 6 | I &lt;&lt; 12, plus the sign flag. */
+	final int[] op;
+	
+	/** The decoded address fields. */
+	final int[] address;
+	
+	/** The breakpoints deciding which entries are flagged, if any. */
+	Breakpoints breakpoints;
+	
+	/** Create an empty cache for a memory of the given size.
+	 */
+	DecodeCache(int size)
+	{
+		op = new int[size];
+		address = new int[size];
+		invalidate();
+	}
+	
+	/** Invalidate the entry of the given address.
+	 */
+	void invalidate(int addr)
+	{
+		op[addr] = INVALID;
+	}
+	
+	/** Invalidate all entries.
+	 */
+	void invalidate()
+	{
+		Arrays.fill(op, INVALID);
+	}
+	
+	/** Decode the given (packed) word into the entry of the given address,
+	 *  and return the decoded operation.
+	 */
+	int decode(int addr, int word)
+	{
+		address[addr] = PackedWord.field(word, 0, 2);
+		int o = encode(word);
+		if(breakpoints!=null && breakpoints.flagged(addr, o))
+			o |= BREAK;
+		return op[addr] = o;
+	}
+	
+	/** Return the decoded operation of a packed word.
+	 */
+	static int encode(int word)
+	{
+		return PackedWord.getByte(word, 5)
+			| PackedWord.getByte(word, 4) << 6
+			| PackedWord.getByte(word, 3) << 12
+			| (word<0 ? NEGATIVE : 0);
+	}
+}
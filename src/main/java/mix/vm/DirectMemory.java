@@ -0,0 +1,59 @@
+package mix.vm;
+
+import java.nio.*;
+
+/** A MIX memory backed by a direct (off-heap) buffer of packed words,
+ *  four bytes per word in native byte order. The underlying buffer can
+ *  be handed to NIO channels as it is, e.g., to save or load a memory image.
+ */
+public class DirectMemory extends Memory
+{
+	/** The raw bytes of the memory. */
+	protected final ByteBuffer buffer;
+	
+	/** The packed memory words, as a view of the raw bytes. */
+	protected final IntBuffer cells;
+	
+	/** Create a new memory whose words are all +0.
+	 */
+	public DirectMemory()
+	{
+		buffer = ByteBuffer.allocateDirect(4*MixVM.MEMORY_SIZE).order(ByteOrder.nativeOrder());
+		cells = buffer.asIntBuffer();
+	}
+	
+	public int get(int address)
+	{
+		return cells.get(address);
+	}
+	
+	public void set(int address, int word)
+	{
+		cells.put(address, word);
+	}
+	
+	public void copyTo(int[] image)
+	{
+		IntBuffer src = cells.duplicate();
+		src.clear();
+		src.get(image, 0, MixVM.MEMORY_SIZE);
+	}
+	
+	public void copyFrom(int[] image)
+	{
+		IntBuffer dest = cells.duplicate();
+		dest.clear();
+		dest.put(image, 0, MixVM.MEMORY_SIZE);
+	}
+	
+	/** Return a duplicate of the underlying buffer, positioned at the
+	 *  beginning of the memory. Changes to its content are reflected
+	 *  in the memory.
+	 */
+	public ByteBuffer buffer()
+	{
+		ByteBuffer b = buffer.duplicate().order(buffer.order());
+		b.clear();
+		return b;
+	}
+}
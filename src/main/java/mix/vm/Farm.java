@@ -0,0 +1,248 @@
+package mix.vm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/** A farm running many copies of the same program, each on a virtual
+ *  machine of its own, with a different input deck.
+ *
+ *  <P>The program is loaded once into a base {@link Snapshot}, which is
+ *  immutable and shared by all the runs: each run restores it into a new
+ *  machine running on a {@link PagedMemory}, so that its memory costs only
+ *  the pages the run writes. The card reader (unit 16) reads the deck, and
+ *  the output units (17 to 20) write to a buffer returned with the
+ *  {@link Result} of the run, along with its outcome, instruction count
+ *  and clock.</P>
+ *
+ *  <P>Runs can be made in the calling thread with {@link #run run()}, or
+ *  submitted to the worker threads of the farm, one per processor by
+ *  default, which are created on the first submission and stopped by
+ *  {@link #shutdown shutdown()}.</P>
+ */
+public class Farm
+{
+	/** The outcomes of a run. */
+	public static final int HALTED = 0, STEP_LIMIT = 1, CYCLE_LIMIT = 2, FAILED = 3;
+
+	private static final String[] OUTCOMES = { "halted", "step limit", "cycle limit", "failed" };
+
+	/** The outcome of a run, with its output. */
+	public static class Result
+	{
+		private final int outcome;
+		private final long steps;
+		private final long clock;
+		private final byte[] output;
+		private final String error;
+
+		Result(int outcome, long steps, long clock, byte[] output, String error)
+		{
+			this.outcome = outcome;
+			this.steps = steps;
+			this.clock = clock;
+			this.output = output;
+			this.error = error;
+		}
+
+		/** Return the outcome: HALTED, STEP_LIMIT, CYCLE_LIMIT or FAILED. */
+		public int getOutcome() { return outcome; }
+
+		/** Return the number of instructions executed. */
+		public long getSteps() { return steps; }
+
+		/** Return the clock of the machine at the end of the run. */
+		public long getClock() { return clock; }
+
+		/** Return the bytes written by the output units. */
+		public byte[] getOutput() { return output; }
+
+		/** Return the error which made the run fail, or null. */
+		public String getError() { return error; }
+
+		/** Return a one-line report of the outcome.
+		 */
+		public String toString()
+		{
+			return describe(outcome, steps, clock, error);
+		}
+	}
+
+	/** The state of the machine where every run starts. */
+	private final Snapshot base;
+
+	private long maxSteps = Long.MAX_VALUE;
+	private long maxCycles = Long.MAX_VALUE;
+	private boolean ioTiming;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/** The context of the machines, whose streams are replaced by those
+	 *  of each run.
+	 */
+	private MixContext context = MixContext.standard();
+
+	/** The worker threads, created on the first submission. */
+	private ExecutorService workers;
+
+	/** Create a farm running the program of the given image from its
+	 *  start address, or from address 0 if it has none.
+	 */
+	public Farm(MixImage image)
+	{
+		MixVM mix = new MixVM(MixContext.standard().withInput(null).withOutput(null), new PagedMemory());
+		int start = mix.load(image);
+		mix.start(start==MixVM.MEMORY_SIZE - 1 ? 0 : start);
+		base = mix.snapshot();
+		mix.close();
+	}
+
+	/** Create a farm whose runs start from the given state, e.g., that of
+	 *  a program which has read its tables and paused.
+	 */
+	public Farm(Snapshot base)
+	{
+		this.base = base;
+	}
+
+	/** Set the maximum number of instructions executed by a run. */
+	public void setMaxSteps(long n) { maxSteps = n; }
+
+	/** Set the maximum number of MIX cycles elapsed in a run; see
+	 *  {@link MixVM#runFast(long, long) MixVM.runFast()}.
+	 */
+	public void setMaxCycles(long n) { maxCycles = n; }
+
+	/** Enable or disable the timing of I/O transfers in MIX cycles. */
+	public void setIOTiming(boolean b) { ioTiming = b; }
+
+	/** Set the context of the machines, e.g., to share an opcode table or
+	 *  to report errors; the input and output of each run replace its own.
+	 */
+	public void setContext(MixContext c) { context = c; }
+
+	/** Set the number of worker threads, before the first submission. */
+	public void setThreads(int n) { threads = Math.max(1, n); }
+
+	/** Run the program in the calling thread, on a new machine reading
+	 *  the given deck.
+	 */
+	public Result run(InputStream deck)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bytes);
+		MixVM mix = new MixVM(context.withInput(deck).withOutput(out), new PagedMemory());
+		int outcome = FAILED;
+		long steps = 0;
+		String error = null;
+		try
+		{
+			// Output is buffered in memory: no need for a writer thread.
+			mix.setAsyncOutput(false);
+			mix.setIOTiming(ioTiming);
+			mix.restore(base);
+			if(!mix.isHalted())
+				steps = mix.runFast(maxSteps, maxCycles);
+			outcome = mix.isHalted() ? HALTED : steps>=maxSteps ? STEP_LIMIT : CYCLE_LIMIT;
+		}
+		catch(Exception e)
+		{
+			error = e.getMessage()!=null ? e.getMessage() : e.toString();
+		}
+		finally
+		{
+			mix.close();
+		}
+		out.flush();
+		return new Result(outcome, steps, mix.clock(), bytes.toByteArray(), error);
+	}
+
+	/** Submit a run reading the given deck to the worker threads.
+	 */
+	public Future<Result> submit(final byte[] deck)
+	{
+		return workers().submit(new Callable<Result>() {
+			public Result call()
+			{
+				return run(new ByteArrayInputStream(deck));
+			}
+		});
+	}
+
+	/** Submit a run reading the given file to the worker threads; the file
+	 *  is opened only when the run starts.
+	 */
+	public Future<Result> submit(final File deck)
+	{
+		return workers().submit(new Callable<Result>() {
+			public Result call() throws IOException
+			{
+				InputStream in = new BufferedInputStream(new FileInputStream(deck));
+				try
+				{
+					return run(in);
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+		});
+	}
+
+	/** Run the program on each of the given decks, in parallel, and return
+	 *  the results in the same order. A deck which cannot be read yields
+	 *  a failed run.
+	 */
+	public List<Result> runAll(List<File> decks) throws InterruptedException
+	{
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		for(File deck : decks)
+			futures.add(submit(deck));
+		List<Result> results = new ArrayList<Result>();
+		for(Future<Result> f : futures)
+		{
+			try
+			{
+				results.add(f.get());
+			}
+			catch(ExecutionException e)
+			{
+				results.add(new Result(FAILED, 0, 0, new byte[0], e.getCause().toString()));
+			}
+		}
+		return results;
+	}
+
+	/** Stop the worker threads, once the runs submitted are over.
+	 */
+	public synchronized void shutdown()
+	{
+		if(workers!=null)
+			workers.shutdown();
+		workers = null;
+	}
+
+	private synchronized ExecutorService workers()
+	{
+		if(workers==null)
+			workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "MIX farm");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		return workers;
+	}
+
+	/** Return a one-line report of the outcome of a run.
+	 */
+	public static String describe(int outcome, long steps, long clock, String error)
+	{
+		String s = OUTCOMES[outcome] + ", " + steps + " instructions, " + clock + " cycles";
+		if(error!=null)
+			s += ": " + error;
+		return s;
+	}
+}
@@ -0,0 +1,37 @@
+package mix.vm;
+
+/** A MIX memory backed by a single <CODE>int[]</CODE> on the Java heap.
+ *  This is the default backend of the MIX virtual machine.
+ */
+public class HeapMemory extends Memory
+{
+	/** The packed memory words. */
+	protected final int[] cells;
+	
+	/** Create a new memory whose words are all +0.
+	 */
+	public HeapMemory()
+	{
+		cells = new int[MixVM.MEMORY_SIZE];
+	}
+	
+	public int get(int address)
+	{
+		return cells[address];
+	}
+	
+	public void set(int address, int word)
+	{
+		cells[address] = word;
+	}
+	
+	public void copyTo(int[] image)
+	{
+		System.arraycopy(cells, 0, image, 0, cells.length);
+	}
+	
+	public void copyFrom(int[] image)
+	{
+		System.arraycopy(image, 0, cells, 0, cells.length);
+	}
+}
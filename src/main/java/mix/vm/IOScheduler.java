@@ -0,0 +1,130 @@
+package mix.vm;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+/** The background worker of the MIX I/O subsystem.
+ *
+ *  <P>Output blocks are copied out of the MIX memory when an <CODE>OUT</CODE>
+ *  instruction is executed, and written to their unit by a single daemon
+ *  thread while the machine keeps executing. Having one worker for all
+ *  the units keeps the transfers in the order the program issued them,
+ *  even when several units share the same output stream.</P>
+ *
+ *  <P>Every other operation (input, positioning) first waits for all pending
+ *  transfers with {@link #await await()}, which also reports the first I/O
+ *  error encountered by the worker, if any.</P>
+ */
+final class IOScheduler
+{
+	/** The worker thread, created on the first submission. */
+	private ExecutorService worker;
+	
+	/** The last transfer submitted; transfers complete in order. */
+	private Future<?> last;
+	
+	/** The first error encountered by the worker and not reported yet. */
+	private IOException failure;
+	
+	/** Submit the transfer of a block to an output unit, optionally
+	 *  followed by the end of a line.
+	 */
+	synchronized void submit(final IOUnit unit, final int[] block, final boolean newline)
+	{
+		if(worker==null)
+			worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "MIX I/O");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		last = worker.submit(new Runnable() {
+			public void run()
+			{
+				try
+				{
+					unit.write(block, newline);
+				}
+				catch(IOException e)
+				{
+					fail(e);
+				}
+				catch(RuntimeException e)
+				{
+					fail(new IOException(e));
+				}
+			}
+		});
+	}
+	
+	private synchronized void fail(IOException e)
+	{
+		if(failure==null)
+			failure = e;
+	}
+	
+	/** Wait for all the transfers submitted so far to complete, and throw
+	 *  the first error encountered by the worker, if any.
+	 */
+	void await() throws IOException
+	{
+		Future<?> f;
+		synchronized(this)
+		{
+			f = last;
+		}
+		if(f!=null)
+		{
+			boolean interrupted = false;
+			while(true)
+			{
+				try
+				{
+					f.get();
+					break;
+				}
+				catch(InterruptedException e)
+				{
+					interrupted = true;
+				}
+				catch(ExecutionException e)
+				{
+					break; // cannot happen: the transfers catch their exceptions
+				}
+			}
+			if(interrupted)
+				Thread.currentThread().interrupt();
+		}
+		synchronized(this)
+		{
+			IOException e = failure;
+			failure = null;
+			if(e!=null)
+				throw e;
+		}
+	}
+	
+	/** Wait for all pending transfers, discarding errors, and stop the
+	 *  worker thread.
+	 */
+	void shutdown()
+	{
+		try
+		{
+			await();
+		}
+		catch(IOException e)
+		{
+			// Nobody is left to report it to.
+		}
+		synchronized(this)
+		{
+			if(worker!=null)
+				worker.shutdown();
+			worker = null;
+			last = null;
+		}
+	}
+}
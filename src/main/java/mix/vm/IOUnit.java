@@ -1,28 +1,77 @@
 package mix.vm;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 
+/** A MIX input-output unit, attached to a file, to an input stream
+ *  or to an output stream.
+ *
+ *  <P>A file holds numeric data, as 4 bytes per word in big-endian order:
+ *  the sign in the most significant bit and the 30-bit magnitude in the
+ *  least significant bits, i.e., the representation of {@link PackedWord}.
+ *  Positive words are thus stored as ordinary integers. Files are read
+ *  and written one block at a time, with a single channel transfer.</P>
+ *
+ *  <P>Streams hold alphanumeric data, translated between characters and
+ *  the internal MIX character code.</P>
+ */
 public class IOUnit
 {
+	/** The number of bytes per word in a file. */
+	public static final int WORD_BYTES = 4;
+	
+	private static final String NEWLINE = System.getProperty("line.separator");
+	
 	protected InputStream in;
 	protected PrintStream out;
 	protected RandomAccessFile file;
+	protected FileChannel channel;
 	protected int blockSize;
+	
+	/** The position in the file, in bytes. */
 	protected long position;
 	
+	/** The transfer buffer for a block, reused by all transfers. */
+	protected ByteBuffer buffer;
+	
+	/** The characters of a block, followed by room for the end of the
+	 *  line, reused by all transfers from or to a stream.
+	 */
+	protected char[] line;
+	
+	/** The bytes read from an input stream, one per character. */
+	private byte[] bytes;
+	
+	/** The duration of a block transfer, in MIX cycles. */
+	protected int transferTime;
+	
+	/** The time, according to the MIX clock, at which the current
+	 *  transfer will be complete.
+	 */
+	protected long readyAt;
+	
 	public IOUnit()
 	{
 		in = null;
 		out = null;
 		file = null;
+		channel = null;
 		blockSize = 0;
 		position = 0;
+		transferTime = 0;
+		readyAt = 0;
 	}
 	
 	public void setBlockSize(int size)
 	{
 		if(size>=0)
+		{
 			blockSize = size;
+			buffer = ByteBuffer.allocate(WORD_BYTES*size);
+			line = new char[MixVM.REGISTER_WIDTH*size + NEWLINE.length()];
+		}
 	}
 	
 	public void setFile(File f)
@@ -30,6 +79,8 @@ public class IOUnit
 		try
 		{
 			file = new RandomAccessFile(f, "rw");
+			channel = file.getChannel();
+			position = 0;
 		}
 		catch(FileNotFoundException e)
 		{
@@ -51,11 +102,60 @@ public class IOUnit
 		return blockSize;
 	}
 	
+	/** Set the duration of a block transfer, in MIX cycles. With the
+	 *  default of zero, a unit is never busy.
+	 */
+	public void setTransferTime(int cycles)
+	{
+		if(cycles>=0)
+			transferTime = cycles;
+	}
+	
+	public int getTransferTime()
+	{
+		return transferTime;
+	}
+	
+	/** Start a transfer at the given time, according to the MIX clock,
+	 *  and return the time at which it actually starts, i.e., once the
+	 *  previous transfer is complete.
+	 */
+	long begin(long clock)
+	{
+		long start = Math.max(clock, readyAt);
+		readyAt = start + transferTime;
+		return start;
+	}
+	
+	/** Return the time, according to the MIX clock, at which the unit
+	 *  will be ready.
+	 */
+	long readyAt()
+	{
+		return readyAt;
+	}
+	
 	public boolean isBusy()
 	{
 		return !isReady();
 	}
 	
+	/** Check whether the unit is busy at the given time, according to
+	 *  the MIX clock.
+	 */
+	public boolean isBusy(long clock)
+	{
+		return !isReady(clock);
+	}
+	
+	/** Check whether the unit is ready at the given time, according to
+	 *  the MIX clock: it must be attached, and done with its last transfer.
+	 */
+	public boolean isReady(long clock)
+	{
+		return isReady() && clock>=readyAt;
+	}
+	
 	public boolean isReady()
 	{
 		if(in==null && out==null && file==null)
@@ -78,7 +178,8 @@ public class IOUnit
 			{
 				file.seek(position);
 				value = file.readInt();
-				position += 4;
+				position += WORD_BYTES;
+				return MixWord.unpack(MixVM.REGISTER_WIDTH, value);
 			}
 			catch(IOException ioe)
 			{
@@ -86,21 +187,115 @@ public class IOUnit
 			}
 		}
 		else if(in!=null)
-			for(int i = 0; i<MixVM.REGISTER_WIDTH; i++)
+			value = readCharacters();
+		return new MixWord(MixVM.REGISTER_WIDTH, value);
+	}
+	
+	/** Read five characters from the input stream and return them packed
+	 *  into a word.
+	 */
+	private int readCharacters()
+	{
+		try
+		{
+			fill(MixVM.REGISTER_WIDTH);
+		}
+		catch(IOException e)
+		{
+			// Let's pretend nothing happened...
+		}
+		return MixChar.word(CharBuffer.wrap(line, 0, MixVM.REGISTER_WIDTH), 0);
+	}
+	
+	/** Read the given number of characters from the input stream into
+	 *  {@link #line}, one byte per character. Past the end of the stream,
+	 *  characters read as blanks.
+	 */
+	private void fill(int n) throws IOException
+	{
+		if(bytes==null || bytes.length<n)
+			bytes = new byte[n];
+		int k = 0;
+		while(k<n)
+		{
+			int r = in.read(bytes, k, n - k);
+			if(r<0)
+				break;
+			k += r;
+		}
+		for(int i = 0; i<k; i++)
+			line[i] = (char) (bytes[i] & 0xFF);
+		for(int i = k; i<n; i++)
+			line[i] = ' ';
+	}
+	
+	/** Read a whole block from the I/O device into the first
+	 *  {@link #getBlockSize getBlockSize()} elements of the given array,
+	 *  as packed words. Past the end of a file, words read as zero.
+	 */
+	public void read(int[] block) throws IOException
+	{
+		if(channel!=null)
+		{
+			buffer.clear();
+			while(buffer.hasRemaining())
+				if(channel.read(buffer, position + buffer.position())<0)
+					break;
+			while(buffer.hasRemaining())
+				buffer.put((byte) 0);
+			position += buffer.capacity();
+			buffer.flip();
+			buffer.asIntBuffer().get(block, 0, blockSize);
+		}
+		else if(in!=null)
+		{
+			fill(MixVM.REGISTER_WIDTH*blockSize);
+			MixChar.words(line, 0, blockSize, block, 0);
+		}
+		else
+		{
+			for(int i = 0; i<blockSize; i++)
+				block[i] = 0;
+		}
+	}
+	
+	/** Write a whole block to the I/O device from the first
+	 *  {@link #getBlockSize getBlockSize()} elements of the given array
+	 *  of packed words.
+	 */
+	public void write(int[] block) throws IOException
+	{
+		write(block, false);
+	}
+	
+	/** Write a whole block to the I/O device, as above, optionally
+	 *  followed by the end of a line (files have no lines). On an output stream, the block
+	 *  (and the end of the line) is translated into characters in one
+	 *  pass and printed with a single call, and the stream is flushed
+	 *  at the end of each line.
+	 */
+	public void write(int[] block, boolean newline) throws IOException
+	{
+		if(channel!=null)
+		{
+			buffer.clear();
+			buffer.asIntBuffer().put(block, 0, blockSize);
+			while(buffer.hasRemaining())
+				buffer.position(buffer.position() + channel.write(buffer, position + buffer.position()));
+			position += buffer.capacity();
+		}
+		else if(out!=null)
+		{
+			int k = MixChar.characters(block, 0, blockSize, line, 0);
+			if(newline)
 			{
-				try
-				{
-					// Convert character into internal MIX representation:
-					int n = MixChar.number((char) in.read()).intValue();
-					// Pack 5 characters into a 30-bit (5-byte) integer value:
-					value = (value << MixByte.N_BITS) | (n & MixByte.MAX_VALUE);
-				}
-				catch(IOException e)
-				{
-					// Let's pretend nothing happened...
-				}
+				NEWLINE.getChars(0, NEWLINE.length(), line, k);
+				k += NEWLINE.length();
 			}
-		return new MixWord(MixVM.REGISTER_WIDTH, value);
+			out.print(new String(line, 0, k));
+			if(newline)
+				out.flush();
+		}
 	}
 	
 	public void write(MixWord w)
@@ -110,8 +305,8 @@ public class IOUnit
                 try
                 {
                     file.seek(position);
-                    file.write(w.intValue());
-                    position += 4;
+                    file.writeInt(w.pack());
+                    position += WORD_BYTES;
                 }
                 catch(IOException ioe)
                 {
@@ -120,11 +315,7 @@ public class IOUnit
             }
             else if(out!=null)
             {
-                for(int i = 1; i<=MixVM.REGISTER_WIDTH; i++)
-                {
-                    char c = MixChar.character(w.getByte(i));
-                    out.print(c);
-                }
+                out.print(MixChar.toString(w.pack()));
             }
 	}
 	
@@ -143,8 +334,9 @@ public class IOUnit
 		out.println();
 	}
 	
-	/** Position the device relative to the current position.
-	 *  A value of zero, however, means skip to the beginning of the file.
+	/** Position the device relative to the current position, by the
+	 *  given number of blocks. A value of zero, however, means skip to
+	 *  the beginning of the file.
 	 */
 	public void seek(int offset)
 	{
@@ -154,13 +346,13 @@ public class IOUnit
 			position = 0;
 		else
 		{
-			position += offset;
+			position += (long) offset*blockSize*WORD_BYTES;
 			if(position<0)
 				position = 0;
 			try
 			{
-				if(position>file.length())
-					position = file.length();
+				if(position>length())
+					position = length();
 			}
 			catch(IOException e)
 			{
@@ -168,4 +360,29 @@ public class IOUnit
 			}
 		}
 	}
+	
+	/** Return the length of the attached file, in bytes.
+	 */
+	protected long length() throws IOException
+	{
+		return file.length();
+	}
+	
+	/** Close the attached file, if any. Streams are left open.
+	 */
+	public void close()
+	{
+		if(file==null)
+			return;
+		try
+		{
+			file.close();
+		}
+		catch(IOException e)
+		{
+			// Let's pretend nothing happened...
+		}
+		file = null;
+		channel = null;
+	}
 }
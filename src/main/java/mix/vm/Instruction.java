@@ -7,21 +7,55 @@ package mix.vm;
  */
 class Instruction
 {
-    protected MixWord A;
+    /** The value of the address field (0:2). */
+    protected int A;
+    /** The sign of the instruction word, as a {@link PackedWord} sign bit. */
+    protected int S;
     protected int I;
     protected int F;
     protected int C;
-    private int M;
+    /** The effective address, as computed by {@link #index index()}. */
+    int M;
 
     /**
-     * Creates a new instance of an instruction by decoding a word.
+     * Creates a new, empty instruction, to be filled by {@link #set set()}.
+     * The interpreter reuses a single instance for all execution steps.
      */
-    public Instruction(MixWord w)
+    Instruction()
     {
-        A = w.subWord(new FieldSpecification(0, 2));
-        I = w.getByte(3).intValue();
-        F = w.getByte(4).intValue();
-        C = w.getByte(5).intValue();
+    }
+
+    /**
+     * Creates a new instance of an instruction by decoding a packed word.
+     */
+    public Instruction(int w)
+    {
+        set(DecodeCache.encode(w), PackedWord.field(w, 0, 2));
+    }
+
+    /**
+     * Sets the fields of this instruction from an entry of the
+     * decoded-instruction cache.
+     *
+     * @param op the decoded operation, as produced by {@link DecodeCache#encode}
+     * @param a the value of the address field
+     */
+    void set(int op, int a)
+    {
+        A = a;
+        S = (op & DecodeCache.NEGATIVE)!=0 ? PackedWord.SIGN : 0;
+        I = (op >> 12) & MixByte.MAX_VALUE;
+        F = (op >> 6) & MixByte.MAX_VALUE;
+        C = op & MixByte.MAX_VALUE;
+    }
+
+    /**
+     * Computes the effective address <var>M</var>, i.e., the address field
+     * plus the content of the index register, if any.
+     */
+    void index(MixVM mix)
+    {
+        M = A + mix.index(I);
     }
 
     /**
@@ -101,7 +135,7 @@ class Instruction
      */
     private int V(MixVM mix)
     {
-            return mix.read(M).subWord(new FieldSpecification(F)).intValue();
+            return mix.memory.field(M, F);
     }
 
     /**
@@ -109,7 +143,7 @@ class Instruction
      */
     public void execute(MixVM mix) throws Exception
     {
-        M = A.intValue() + mix.getIndexRegister(I).intValue();
+        index(mix);
 
         switch(C)
         {
@@ -120,49 +154,49 @@ class Instruction
                 if(F==6) // FADD
                 {
                     mix.tick(4); // Cf. TAOCP, Volume 2, page 224
-                    mix.setAccumulator(mix.getAccumulator().doubleValue() + mix.read(M).doubleValue());
+                    mix.setAccumulator(PackedWord.doubleValue(mix.rA) + PackedWord.doubleValue(mix.memory.get(M)));
                 }
                 else // ADD
                 {
                     mix.tick(2);
-                    mix.setAccumulator(mix.getAccumulator().intValue() + V(mix));
+                    mix.setAccumulator(PackedWord.intValue(mix.rA) + V(mix));
                 }
                 break;
             case 2:
                 if(F==6) // FSUB
                 {
                     mix.tick(4); // Cf. TAOCP, Volume 2, page 224
-                    mix.setAccumulator(mix.getAccumulator().doubleValue() - mix.read(M).doubleValue());
+                    mix.setAccumulator(PackedWord.doubleValue(mix.rA) - PackedWord.doubleValue(mix.memory.get(M)));
                 }
                 else // SUB
                 {
                     mix.tick(2);
-                    mix.setAccumulator(mix.getAccumulator().intValue() - V(mix));
+                    mix.setAccumulator(PackedWord.intValue(mix.rA) - V(mix));
                 }
                 break;
             case 3:
                 if(F==6) // FMUL
                 {
                     mix.tick(9); // Cf. TAOCP, Volume 2, page 224
-                    mix.setAccumulator(mix.getAccumulator().doubleValue()*mix.read(M).doubleValue());
+                    mix.setAccumulator(PackedWord.doubleValue(mix.rA)*PackedWord.doubleValue(mix.memory.get(M)));
                 }
                 else // MUL
                 {
                     mix.tick(10);
-                    mix.setExtendedAccumulator(mix.getAccumulator().intValue()*(long)V(mix));
+                    mix.setExtendedAccumulator(PackedWord.intValue(mix.rA)*(long)V(mix));
                 }
                 break;
             case 4:
                 if(F==6) // FDIV
                 {
                     mix.tick(11); // Cf. TAOCP, Volume 2, page 224
-                    mix.setAccumulator(mix.getAccumulator().doubleValue()/mix.read(M).doubleValue());
+                    mix.setAccumulator(PackedWord.doubleValue(mix.rA)/PackedWord.doubleValue(mix.memory.get(M)));
                 }
                 else // DIV
                 {
                     mix.tick(12);
                     int V = V(mix);
-                    long dividend = mix.getExtendedAccumulator().longValue();
+                    long dividend = PackedWord.sign(mix.rA)*mix.getExtendedMagnitude();
                     mix.setExtension((int) dividend%V);
                     long quotient = dividend/V;
                     if(quotient<-MixWord.MAX_VALUE || quotient>MixWord.MAX_VALUE)
@@ -176,33 +210,34 @@ class Instruction
                 {
                     case 0: // NUM
                         mix.tick(10);
-                        MixWord w = mix.getExtendedAccumulator();
+                        long ext = mix.getExtendedMagnitude();
                         int n = 0;
                         int unit = 1;
-                        for(int i = w.size(); i>0; i--)
+                        for(int i = 2*MixVM.REGISTER_WIDTH; i>0; i--)
                         {
-                            int b = w.getByte(i).intValue()%10;
+                            int b = ((int) ext & MixByte.MAX_VALUE)%10;
+                            ext >>>= MixByte.N_BITS;
                             n += b*unit;
                             unit *= 10;
                         }
-                        mix.setAccumulator(n*w.sign());
-                            break;
+                        mix.setAccumulator(n*PackedWord.sign(mix.rA));
+                        break;
                     case 1: // CHAR
                         mix.tick(10);
-                        n = mix.getAccumulator().intValue();
+                        n = PackedWord.intValue(mix.rA);
                         String s = String.valueOf(n);
                         if(s.charAt(0)=='-')
                             s = s.substring(1);
-                        w = mix.getExtendedAccumulator();
-                        for(int i = w.size(); i>0; i--)
+                        ext = 0;
+                        for(int i = 1; i<=2*MixVM.REGISTER_WIDTH; i++)
                         {
                             int b = 0;
-                            int j = s.length() - w.size() + i - 1;
+                            int j = s.length() - 2*MixVM.REGISTER_WIDTH + i - 1;
                             if(j>=0)
                                 b = s.charAt(j) - 18;
-                                w.setByte(i, new MixByte(b));
+                            ext = (ext << MixByte.N_BITS) | (b & MixByte.MAX_VALUE);
                         }
-                        mix.setExtendedAccumulator(w);
+                        mix.setExtendedMagnitude(ext);
                         break;
                     case 2: // HLT
                         mix.tick(10);
@@ -210,11 +245,11 @@ class Instruction
                         break;
                     case 6: // FLOT
                         mix.tick(3); // Cf. TAOCP, Volume 2, page 224
-                        mix.setAccumulator((double) mix.getAccumulator().intValue());
+                        mix.setAccumulator((double) PackedWord.intValue(mix.rA));
                         break;
                     case 7: // FIX
                         mix.tick(3); // Cf. TAOCP, Volume 2, page 224
-                        double d = mix.getAccumulator().doubleValue();
+                        double d = PackedWord.doubleValue(mix.rA);
                         if(Math.abs(d)<Math.pow(64.0, 5.0))
                             n = (int) Math.round(d);
                         else
@@ -231,42 +266,28 @@ class Instruction
                 switch(F)
                 {
                     case 0: // SLA
-                            MixWord w = mix.getAccumulator();
-                            w.shiftLeft(M);						
+                            mix.rA = PackedWord.shiftLeft(mix.rA, M);
                             break;
                     case 1: // SRA
-                            w = mix.getAccumulator();
-                            w.shiftRight(M);						
+                            mix.rA = PackedWord.shiftRight(mix.rA, M);
                             break;
                     case 2:	// SLAX
-                            w = mix.getExtendedAccumulator();
-                            w.shiftLeft(M);
-                            mix.setExtendedAccumulator(w);						
+                            mix.setExtendedMagnitude(PackedWord.shiftLeft(mix.getExtendedMagnitude(), M));
                             break;
                     case 3: // SRAX
-                            w = mix.getExtendedAccumulator();
-                            w.shiftRight(M);
-                            mix.setExtendedAccumulator(w);						
+                            mix.setExtendedMagnitude(PackedWord.shiftRight(mix.getExtendedMagnitude(), M));
                             break;
                     case 4: // SLC
-                            w = mix.getExtendedAccumulator();
-                            w.rotateLeft(M);
-                            mix.setExtendedAccumulator(w);						
+                            mix.setExtendedMagnitude(PackedWord.rotateLeft(mix.getExtendedMagnitude(), M));
                             break;
                     case 5: // SRC
-                            w = mix.getExtendedAccumulator();
-                            w.rotateRight(M);
-                            mix.setExtendedAccumulator(w);						
+                            mix.setExtendedMagnitude(PackedWord.rotateRight(mix.getExtendedMagnitude(), M));
                             break;
                     case 6: // SLB
-                            w = mix.getExtendedAccumulator();
-                            w.shiftLeftBinary(M);
-                            mix.setExtendedAccumulator(w);
+                            mix.setExtendedMagnitude(PackedWord.shiftLeftBinary(mix.getExtendedMagnitude(), M));
                             break;
                     case 7: // SRB
-                            w = mix.getExtendedAccumulator();
-                            w.shiftRightBinary(M);
-                            mix.setExtendedAccumulator(w);
+                            mix.setExtendedMagnitude(PackedWord.shiftRightBinary(mix.getExtendedMagnitude(), M));
                             break;
                     default: // Unknown OPCODE!
                             throw new InstructionNotImplementedException(this, "Unknown shift instruction!");
@@ -274,10 +295,10 @@ class Instruction
                 break;
             case 7: // MOVE
                 mix.tick(1 + 2*F);
-                int dest = mix.getIndexRegister(1).intValue();
-                mix.setIndexRegister(1, mix.getIndexRegister(1).intValue() + F);
+                int dest = mix.index(1);
+                mix.setIndexRegister(1, dest + F);
                 for(int i = 0; i<F; i++)
-                        mix.write(dest + i, mix.read(M + i));
+                        mix.store(dest + i, mix.memory.get(M + i));
                 break;
             case 8: // LDA
                 mix.tick(2);
@@ -315,7 +336,7 @@ class Instruction
                 break;
             case 24: // STA
                 mix.tick(2);
-                mix.write(M, new FieldSpecification(F), mix.getAccumulator());
+                mix.storeField(M, F, mix.rA);
                 break;
             case 25: // ST1
             case 26: // ST2
@@ -324,25 +345,25 @@ class Instruction
             case 29: // ST5
             case 30: // ST6
                 mix.tick(2);
-                mix.write(M, new FieldSpecification(F), mix.getIndexRegister(C - 24));
+                mix.storeField(M, F, mix.rI[C - 25]);
                 break;
             case 31: // STX
                 mix.tick(2);
-                mix.write(M, new FieldSpecification(F), mix.getExtension());
+                mix.storeField(M, F, mix.rX);
                 break;
             case 32: // STJ
                 mix.tick(2);
-                mix.write(M, new FieldSpecification(F), mix.getJumpRegister());
+                mix.storeField(M, F, mix.rJ);
                 break;
             case 33: // STZ
                 mix.tick(2);
-                mix.write(M, new FieldSpecification(F), new MixWord(mix.REGISTER_WIDTH));
+                mix.storeField(M, F, 0);
                 break;
             case 34: // JBUS
                 mix.tick(1);
                 if(F<mix.N_IO_UNITS)
                 {
-                    if(mix.unit(F).isBusy())
+                    if(mix.unit(F).isBusy(mix.clock))
                     {
                         mix.setJumpRegister();
                         mix.setLocationPtr(M);
@@ -354,6 +375,8 @@ class Instruction
             case 35: // IOC
                 mix.tick(1);
                 IOUnit u = mix.unit(F);
+                if(u!=null)
+                    mix.control(u);
                 switch(F)
                 {
                     case 0:
@@ -397,26 +420,20 @@ class Instruction
                 u = mix.unit(F);
                 if(u==null)
                     throw new InstructionNotImplementedException(this, "Invalid I/O unit!");
-                int blocksize = u.getBlockSize();
-                for(int i = 0; i<blocksize; i++)
-                    mix.write(M++, u.read());
+                mix.input(u, M);
                 break;
             case 37: // OUT
                 mix.tick(1);
                 u = mix.unit(F);
                 if(u==null)
                     throw new InstructionNotImplementedException(this, "Invalid I/O unit!");
-                blocksize = u.getBlockSize();
-                for(int i = 0; i<blocksize; i++)
-                    u.write(mix.read(M++));
-                if(F>=16)
-                    u.newline();
+                mix.output(u, M, F>=16);
                 break;
             case 38: // JRED
                 mix.tick(1);
                 if(F<mix.N_IO_UNITS)
                 {
-                    if(mix.unit(F).isReady())
+                    if(mix.unit(F).isReady(mix.clock))
                     {
                         mix.setJumpRegister();
                         mix.setLocationPtr(M);
@@ -496,7 +513,7 @@ class Instruction
                 break;
             case 40: // JA<cond>
                 mix.tick(1);
-                conditionalJump(mix, M, mix.getAccumulator().intValue());
+                conditionalJump(mix, M, PackedWord.intValue(mix.rA));
                 break;
             case 41: // J1<cond>
             case 42: // J2<cond>
@@ -505,31 +522,31 @@ class Instruction
             case 45: // J5<cond>
             case 46: // J6<cond>
                 mix.tick(1);
-                conditionalJump(mix, M, mix.getIndexRegister(C - 40).intValue());
+                conditionalJump(mix, M, mix.index(C - 40));
                 break;
             case 47: // JX<cond>
                 mix.tick(1);
-                conditionalJump(mix, M, mix.getExtension().intValue());
+                conditionalJump(mix, M, PackedWord.intValue(mix.rX));
                 break;
             case 48: // Accumulator address-transfer instructions:
                 mix.tick(1);
                 switch(F)
                 {
                     case 0: // INCA
-                        mix.setAccumulator(mix.getAccumulator().intValue() + M);
+                        mix.setAccumulator(PackedWord.intValue(mix.rA) + M);
                         break;
                     case 1: // DECA
-                        mix.setAccumulator(mix.getAccumulator().intValue() - M);
+                        mix.setAccumulator(PackedWord.intValue(mix.rA) - M);
                         break;
                     case 2: // ENTA
                         mix.setAccumulator(M);
                         if(M==0)
-                            mix.getAccumulator().setSign(A.sign());
+                            mix.rA = S;
                         break;
                     case 3: // ENNA
                         mix.setAccumulator(-M);
                         if(M==0)
-                            mix.getAccumulator().setSign(-A.sign());
+                            mix.rA = S ^ PackedWord.SIGN;
                         break;
                     default: // Unknown OPCODE!
                         throw new InstructionNotImplementedException(this, "Unknown address transfer instruction!");
@@ -545,20 +562,20 @@ class Instruction
                 switch(F)
                 {
                     case 0: // INCi
-                        mix.setIndexRegister(C - 48, mix.getIndexRegister(C - 48).intValue() + M);
+                        mix.setIndexRegister(C - 48, mix.index(C - 48) + M);
                         break;
                     case 1: // DECi
-                        mix.setIndexRegister(C - 48, mix.getIndexRegister(C - 48).intValue() - M);
+                        mix.setIndexRegister(C - 48, mix.index(C - 48) - M);
                         break;
                     case 2: // ENTi
                         mix.setIndexRegister(C - 48, M);
                         if(M==0)
-                            mix.getIndexRegister(C - 48).setSign(A.sign());
+                            mix.rI[C - 49] = S;
                         break;
                     case 3: // ENNi
                         mix.setIndexRegister(C - 48, -M);
                         if(M==0)
-                            mix.getIndexRegister(C - 48).setSign(-A.sign());
+                            mix.rI[C - 49] = S ^ PackedWord.SIGN;
                         break;
                     default: // Unknown OPCODE!
                         throw new InstructionNotImplementedException(this, "Unknown address transfer instruction!");
@@ -569,20 +586,20 @@ class Instruction
                 switch(F)
                 {
                     case 0: // INCX
-                        mix.setExtension(mix.getExtension().intValue() + M);
+                        mix.setExtension(PackedWord.intValue(mix.rX) + M);
                         break;
                     case 1: // DECX
-                        mix.setExtension(mix.getExtension().intValue() - M);
+                        mix.setExtension(PackedWord.intValue(mix.rX) - M);
                         break;
                     case 2: // ENTX
                         mix.setExtension(M);
                         if(M==0)
-                            mix.getExtension().setSign(A.sign());
+                            mix.rX = S;
                         break;
                     case 3: // ENNX
                         mix.setExtension(-M);
                         if(M==0)
-                            mix.getExtension().setSign(-A.sign());
+                            mix.rX = S ^ PackedWord.SIGN;
                         break;
                     default: // Unknown OPCODE!
                         throw new InstructionNotImplementedException(this, "Unknown address transfer instruction!");
@@ -599,9 +616,9 @@ class Instruction
                      */
                     mix.tick(4); // Cf. TAOCP, Volume 2, page 224
                     // Reads the EPSILON to use for approximate comparison il location 0
-                    double epsilon = mix.read(0).doubleValue();
+                    double epsilon = PackedWord.doubleValue(mix.memory.get(0));
                     // Calculate the difference between rA and the operand
-                    double diff = mix.getAccumulator().doubleValue() - mix.read(M).doubleValue();
+                    double diff = PackedWord.doubleValue(mix.rA) - PackedWord.doubleValue(mix.memory.get(M));
                     // Result of comparison:
                     int comparison = 0;
                     if(diff>epsilon) comparison = 1;
@@ -611,7 +628,7 @@ class Instruction
                 else // CMPA
                 {
                     mix.tick(2);
-                    mix.compare(mix.getAccumulator().intValue() - V(mix));
+                    mix.compare(PackedWord.intValue(mix.rA) - V(mix));
                 }
                 break;
             case 57: // CMP1
@@ -621,11 +638,11 @@ class Instruction
             case 61: // CMP5
             case 62: // CMP6
                 mix.tick(2);
-                mix.compare(mix.getIndexRegister(C - 56).intValue() - V(mix));
+                mix.compare(mix.index(C - 56) - V(mix));
                 break;
             case 63: // CMPX
                 mix.tick(2);
-                mix.compare(mix.getExtension().intValue() - V(mix));
+                mix.compare(PackedWord.intValue(mix.rX) - V(mix));
                 break;
             default: // Unknown OPCODE!
                 throw new InstructionNotImplementedException(this, "Unknown instruction!");
@@ -639,6 +656,6 @@ class Instruction
      */
     public String toString()
     {
-        return "" + C + " " + A.intValue() + "," + I + "(" + F + ")";
+        return "" + C + " " + A + "," + I + "(" + F + ")";
     }
 }
@@ -0,0 +1,240 @@
+package mix.vm;
+
+import java.util.Arrays;
+
+/** An undo journal of the instructions executed by a MIX virtual machine,
+ *  which allows to step back through the execution of a program.
+ *
+ *  <P>The journal is a ring buffer of entries, each a <CODE>long</CODE>
+ *  holding a tag and a 32-bit value, so that recording allocates nothing.
+ *  Every instruction starts with a header holding its address, the
+ *  overflow toggle, the low bits of the clock and the old value of the
+ *  register that the operation changes, if any (which is known from the C
+ *  field); it is followed by the address and old value of each memory
+ *  word written, and by a few more entries for the operations which
+ *  change a second register or may wait for an I/O unit. Most instructions
+ *  thus take a single entry. Once the buffer is full, the oldest
+ *  instructions are overwritten; recording never checks for room, the
+ *  entries that are still valid being sorted out when undoing.</P>
+ *
+ *  <P>The effects of the I/O transfers on the devices are not undone:
+ *  stepping back over an <CODE>IN</CODE> restores the memory, but does not
+ *  push the input back.</P>
+ *
+ *  <P>A journal is enabled by attaching it to a virtual machine with
+ *  {@link MixVM#setJournal MixVM.setJournal()}.</P>
+ */
+public class Journal
+{
+	/** The default number of instructions that can be undone. */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/** The tags of the entries: the registers, numbered as in the C field
+	 *  of the load instructions (rA, rI1 to rI6, rX), then rJ and the
+	 *  comparison indicator; the low 32 bits of the clock; and the memory
+	 *  words, whose tag is MEMORY plus the address.
+	 */
+	private static final int X = 7, J = 8, COMPARISON = 9, CLOCK = 10, MEMORY = 16;
+
+	/** The tag of a header is negative, and holds the overflow toggle, the
+	 *  low bits of the clock, and the address of the instruction.
+	 */
+	private static final int HEADER = 0x80000000, OVERFLOW = 1 << 30,
+		CLOCK_SHIFT = 12, CLOCK_MASK = (1 << 18) - 1, ADDRESS_MASK = (1 << CLOCK_SHIFT) - 1;
+
+	/** The register whose old value is kept in the header, and the one
+	 *  kept in an entry of its own, for each value of the C field, or -1.
+	 */
+	private static final int[] FIRST = new int[OperationTable.SIZE];
+	private static final int[] SECOND = new int[OperationTable.SIZE];
+
+	static
+	{
+		Arrays.fill(FIRST, -1);
+		Arrays.fill(SECOND, -1);
+		for(int C = 1; C<7; C++)
+			FIRST[C] = 0; // Arithmetic, special and shift operations
+		for(int C = 3; C<7; C++)
+			SECOND[C] = X; // MUL, DIV, special and shift operations
+		FIRST[7] = 1; // MOVE
+		for(int r = 0; r<8; r++)
+		{
+			FIRST[8 + r] = FIRST[16 + r] = r; // LDr, LDrN
+			FIRST[48 + r] = r; // INCr, DECr, ENTr, ENNr
+			FIRST[56 + r] = COMPARISON; // CMPr
+		}
+		FIRST[34] = FIRST[38] = J; // JBUS, JRED
+		for(int C = 39; C<48; C++)
+			FIRST[C] = J; // Jumps
+		for(int C = 35; C<38; C++)
+			SECOND[C] = CLOCK; // IOC, IN, OUT may wait for the unit
+	}
+
+	/** The entries of the ring buffer. */
+	private final long[] log;
+
+	private final int mask;
+
+	/** The number of entries written so far, modulo 2^32. */
+	private int top;
+
+	/** The value of top when the journal was last cleared. */
+	private int base;
+
+	/** The highest value of top since the journal was cleared, as known
+	 *  at the last undo; the entries below end - log.length may have been
+	 *  overwritten.
+	 */
+	private int end;
+
+	/** Create a journal able to undo the last
+	 *  {@link #DEFAULT_CAPACITY DEFAULT_CAPACITY} instructions.
+	 */
+	public Journal()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Create a journal able to undo about the given number of
+	 *  instructions, allowing two entries per instruction on average.
+	 *  The buffer is rounded up to a power of two, and holds at least the
+	 *  longest instruction, an <CODE>IN</CODE> of 100 words.
+	 */
+	public Journal(int capacity)
+	{
+		int n = Integer.highestOneBit(Math.max(2*capacity - 1, 255)) << 1;
+		log = new long[n];
+		mask = n - 1;
+	}
+
+	/** Record the state of the machine before it executes an instruction,
+	 *  once the instruction has been fetched from the given address and
+	 *  decoded.
+	 */
+	void record(MixVM mix, int address, int op)
+	{
+		int C = op & (OperationTable.SIZE - 1);
+		int header = HEADER | address | ((int) mix.clock & CLOCK_MASK) << CLOCK_SHIFT
+			| (mix.overflow ? OVERFLOW : 0);
+		int r = FIRST[C];
+		int t = top;
+		log[t++ & mask] = (long) header << 32 | (r<0 ? 0 : value(mix, r) & 0xFFFFFFFFL);
+		if((r = SECOND[C])>=0)
+			log[t++ & mask] = (long) r << 32 | (value(mix, r) & 0xFFFFFFFFL);
+		top = t;
+	}
+
+	/** Return the value of a register, or of the low bits of the clock.
+	 */
+	private static int value(MixVM mix, int tag)
+	{
+		switch(tag)
+		{
+			case COMPARISON:
+				return mix.comparison;
+			case CLOCK:
+				return (int) mix.clock;
+			default:
+				return OperationTable.word(mix, tag);
+		}
+	}
+
+	/** Set the value of a register.
+	 */
+	private static void restore(MixVM mix, int tag, int v)
+	{
+		switch(tag)
+		{
+			case J:
+				mix.rJ = v;
+				break;
+			case COMPARISON:
+				mix.comparison = v;
+				break;
+			default:
+				OperationTable.set(mix, tag, v);
+		}
+	}
+
+	/** Record the old value of a memory word about to be written by the
+	 *  current instruction.
+	 */
+	void write(int address, int old)
+	{
+		log[top++ & mask] = (long) (MEMORY + address) << 32 | (old & 0xFFFFFFFFL);
+	}
+
+	/** Return the lowest entry which is still valid.
+	 */
+	private int bottom()
+	{
+		if(top - end>0)
+			end = top;
+		return end - base>log.length ? end - log.length : base;
+	}
+
+	/** Undo the last instruction recorded, restoring the state of the
+	 *  machine before it was executed.
+	 *
+	 *  @return false if there is no instruction left to undo
+	 */
+	boolean undo(MixVM mix)
+	{
+		// Look for the header of the last instruction:
+		int bottom = bottom();
+		int h = top;
+		do
+		{
+			if(h - bottom<=0)
+				return false;
+		}
+		while(log[--h & mask]>=0);
+		long e;
+		long clock = -1;
+		while((e = log[--top & mask])>=0)
+		{
+			int tag = (int) (e >>> 32);
+			int v = (int) e;
+			if(tag>=MEMORY)
+				mix.revert(tag - MEMORY, v);
+			else if(tag==CLOCK)
+				clock = v & 0xFFFFFFFFL;
+			else
+				restore(mix, tag, v);
+		}
+		int header = (int) (e >>> 32);
+		int address = header & ADDRESS_MASK;
+		// The memory being restored, the instruction can be decoded again:
+		int r = FIRST[DecodeCache.encode(mix.memory.get(address)) & (OperationTable.SIZE - 1)];
+		if(r>=0)
+			restore(mix, r, (int) e);
+		mix.lp = address;
+		mix.overflow = (header & OVERFLOW)!=0;
+		// The instruction took less than 2^18 cycles, or 2^32 for I/O:
+		if(clock>=0)
+			mix.clock -= ((int) mix.clock - (int) clock) & 0xFFFFFFFFL;
+		else
+			mix.clock -= ((int) mix.clock - (header >>> CLOCK_SHIFT)) & CLOCK_MASK;
+		// No instruction is executed on a halted machine:
+		mix.halted = false;
+		return true;
+	}
+
+	/** Return the number of instructions that can be undone.
+	 */
+	public int size()
+	{
+		int n = 0;
+		for(int i = bottom(); i!=top; i++)
+			if(log[i & mask]<0)
+				n++;
+		return n;
+	}
+
+	/** Forget all the instructions recorded.
+	 */
+	public void clear()
+	{
+		base = end = top;
+	}
+}
@@ -0,0 +1,168 @@
+package mix.vm;
+
+import java.io.*;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** A tape or disk unit whose file is mapped into memory.
+ *
+ *  <P>Block transfers are bulk copies between the mapped region and
+ *  the transfer buffer, without any system call, and positioning is
+ *  a mere update of the current position. The file format is the same
+ *  as for {@link IOUnit}.</P>
+ *
+ *  <P>The mapping covers the data of the file when it is attached, and
+ *  grows by whole chunks only when the tape is written past its end, so
+ *  that a tape which is only read is left as it is. A tape which has grown
+ *  may be longer than the data it holds until the unit is
+ *  {@link #close closed}, which truncates it to the data actually
+ *  written. If the file cannot be mapped, the unit falls back to the
+ *  channel transfers of {@link IOUnit}.</P>
+ */
+public class MappedIOUnit extends IOUnit
+{
+	/** The granularity, in bytes, by which the mapping grows. */
+	public static final int CHUNK = 1 << 20;
+	
+	/** The mapped region, or null if the file could not be mapped. */
+	protected MappedByteBuffer map;
+	
+	/** The mapped region, viewed as words. */
+	protected IntBuffer words;
+	
+	/** The length of the data in the file, in bytes. */
+	protected long dataLength;
+	
+	public void setFile(File f)
+	{
+		super.setFile(f);
+		map = null;
+		words = null;
+		if(file==null)
+			return;
+		try
+		{
+			dataLength = file.length();
+			map(dataLength);
+		}
+		catch(IOException e)
+		{
+			map = null;
+			words = null;
+		}
+	}
+	
+	/** Map the first <CODE>size</CODE> bytes of the file, extending the
+	 *  file if necessary.
+	 */
+	private void map(long size) throws IOException
+	{
+		if(size>Integer.MAX_VALUE)
+			throw new IOException("Tape too long to be mapped");
+		map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		words = map.asIntBuffer();
+	}
+	
+	/** Make sure the mapping covers the given number of bytes.
+	 */
+	private void ensureCapacity(long size) throws IOException
+	{
+		if(size>map.capacity())
+			map(Math.max(size, Math.min(Math.max(2L*map.capacity(), CHUNK), size + 64L*CHUNK)));
+	}
+	
+	public MixWord read()
+	{
+		if(map==null)
+			return super.read();
+		int value = position + WORD_BYTES<=dataLength ? words.get((int) (position/WORD_BYTES)) : 0;
+		position += WORD_BYTES;
+		return MixWord.unpack(MixVM.REGISTER_WIDTH, value);
+	}
+	
+	public void write(MixWord w)
+	{
+		if(map==null)
+		{
+			super.write(w);
+			return;
+		}
+		try
+		{
+			ensureCapacity(position + WORD_BYTES);
+			words.put((int) (position/WORD_BYTES), w.pack());
+			position += WORD_BYTES;
+			dataLength = Math.max(dataLength, position);
+		}
+		catch(IOException ioe)
+		{
+			// Let's pretend nothing happened...
+		}
+	}
+	
+	public void read(int[] block) throws IOException
+	{
+		if(map==null)
+		{
+			super.read(block);
+			return;
+		}
+		long available = Math.max(0, (dataLength - position)/WORD_BYTES);
+		int n = (int) Math.min(blockSize, available);
+		// Past the end of the data, the position may be past the mapping:
+		if(n>0)
+		{
+			words.position((int) (position/WORD_BYTES));
+			words.get(block, 0, n);
+		}
+		for(int i = n; i<blockSize; i++)
+			block[i] = 0;
+		position += WORD_BYTES*blockSize;
+	}
+	
+	/** Write a whole block to the mapped region; files have no lines, so
+	 *  the end of line is ignored.
+	 */
+	public void write(int[] block, boolean newline) throws IOException
+	{
+		if(map==null)
+		{
+			super.write(block, newline);
+			return;
+		}
+		long end = position + WORD_BYTES*blockSize;
+		ensureCapacity(end);
+		words.position((int) (position/WORD_BYTES));
+		words.put(block, 0, blockSize);
+		position = end;
+		dataLength = Math.max(dataLength, end);
+	}
+	
+	protected long length() throws IOException
+	{
+		return map==null ? super.length() : dataLength;
+	}
+	
+	/** Flush the mapped region, truncate the file to the data written,
+	 *  and close it.
+	 */
+	public void close()
+	{
+		if(map!=null)
+		{
+			try
+			{
+				map.force();
+				map = null;
+				words = null;
+				channel.truncate(dataLength);
+			}
+			catch(IOException e)
+			{
+				// The file keeps its trailing chunk of zeros.
+			}
+		}
+		super.close();
+	}
+}
@@ -0,0 +1,96 @@
+package mix.vm;
+
+/** This class is the backend which holds the contents of the MIX memory.
+ *  Memory words are stored in packed form (see {@link PackedWord}) in a
+ *  single flat store, so that reads, writes and field stores work directly
+ *  on the cells, and the whole memory can be copied with a single bulk
+ *  operation, e.g., to take a snapshot or to dump it.
+ *
+ *  <P>Three implementations are provided: {@link HeapMemory}, backed by an
+ *  <CODE>int[]</CODE>, {@link DirectMemory}, backed by a direct
+ *  (off-heap) buffer, and {@link PagedMemory}, made of copy-on-write pages.</P>
+ */
+public abstract class Memory
+{
+	/** Return the packed content of a memory word.
+	 */
+	public abstract int get(int address);
+	
+	/** Set the packed content of a memory word.
+	 */
+	public abstract void set(int address, int word);
+	
+	/** Copy the contents of the whole memory into the given array,
+	 *  which must hold at least {@link #size size()} words.
+	 */
+	public abstract void copyTo(int[] image);
+	
+	/** Overwrite the contents of the whole memory with the given array,
+	 *  which must hold at least {@link #size size()} words.
+	 */
+	public abstract void copyFrom(int[] image);
+	
+	/** Return the number of words in the memory.
+	 */
+	public int size()
+	{
+		return MixVM.MEMORY_SIZE;
+	}
+	
+	/** Return the integer value of the field of a memory word specified
+	 *  by the given packed field specification 8L + R.
+	 */
+	public int field(int address, int fspec)
+	{
+		return PackedWord.field(get(address), fspec);
+	}
+	
+	/** Assign a value to the field of a memory word specified by the
+	 *  given packed field specification 8L + R.
+	 */
+	public void store(int address, int fspec, int word)
+	{
+		set(address, PackedWord.store(get(address), fspec, word));
+	}
+	
+	/** Return a copy of the contents of the whole memory.
+	 */
+	public int[] toArray()
+	{
+		int[] image = new int[size()];
+		copyTo(image);
+		return image;
+	}
+	
+	/** Return an independent copy of this memory. This copies all the
+	 *  words; {@link PagedMemory} does better.
+	 */
+	public Memory fork()
+	{
+		HeapMemory m = new HeapMemory();
+		copyTo(m.cells);
+		return m;
+	}
+	
+	/** Make the contents of this memory equal to those of the given one.
+	 */
+	public void restore(Memory m)
+	{
+		copyFrom(m.toArray());
+	}
+	
+	/** Set all memory words to +0.
+	 */
+	public void clear()
+	{
+		copyFrom(new int[size()]);
+	}
+	
+	/** Return a memory word as a <CODE>MixWord</CODE>. The returned word
+	 *  is a copy: changing it does not affect the memory.
+	 */
+	public MixWord read(int address)
+	{
+		return MixWord.unpack(MixVM.REGISTER_WIDTH, get(address));
+	}
+}
@@ -0,0 +1,20 @@
+package mix.vm;
+
+/** An observer of the memory of a MIX virtual machine, such as the
+ *  memory view of the IDE; see {@link MixVM#setView MixVM.setView()}.
+ *  The notifications may come from the thread running the machine.
+ */
+public interface MemoryObserver
+{
+	/** A memory word has changed. */
+	void update(int address);
+
+	/** Every memory word may have changed. */
+	void update();
+
+	/** The location pointer has moved. */
+	void setLocationPointer(int address);
+
+	/** The changes notified so far are to be shown. */
+	void refresh();
+}
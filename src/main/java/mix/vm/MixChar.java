@@ -21,16 +21,100 @@ public class MixChar
 		'\\', '|', '"', '~'
 	};
 	
+	/** The reverse table, giving the MIX character code of each
+	 *  character up to the last one of {@link #table}; characters not in
+	 *  the table have code zero, i.e., they are read as blanks.
+	 */
+	private static final byte[] codes;
+	
+	static
+	{
+		int max = 0;
+		for(int i = 0; i<table.length; i++)
+			max = Math.max(max, table[i]);
+		codes = new byte[max + 1];
+		for(int i = 0; i<table.length; i++)
+			codes[table[i]] = (byte) i;
+	}
+	
 	public static char character(MixByte b)
 	{
 		return table[b.intValue()];
 	}
 	
+	/** Return the character of the given MIX character code (0 to 63).
+	 */
+	public static char character(int code)
+	{
+		return table[code];
+	}
+	
+	/** Translate <CODE>n</CODE> packed words, starting at
+	 *  <CODE>words[from]</CODE>, into five characters each, stored from
+	 *  <CODE>chars[at]</CODE> onwards. Return the index just past the
+	 *  last character stored. The signs of the words are ignored.
+	 */
+	public static int characters(int[] words, int from, int n, char[] chars, int at)
+	{
+		for(int i = from; i<from + n; i++)
+		{
+			int w = words[i];
+			for(int shift = MixByte.N_BITS*(MixVM.REGISTER_WIDTH - 1); shift>=0; shift -= MixByte.N_BITS)
+				chars[at++] = table[(w >> shift) & MixByte.MAX_VALUE];
+		}
+		return at;
+	}
+	
+	/** Return the five characters of a packed word as a string.
+	 */
+	public static String toString(int word)
+	{
+		char[] chars = new char[MixVM.REGISTER_WIDTH];
+		characters(new int[] { word }, 0, 1, chars, 0);
+		return new String(chars);
+	}
+	
+	/** Return the MIX character code of the given character; characters
+	 *  that have no code are translated as a blank (code zero).
+	 */
+	public static int code(char c)
+	{
+		return c<codes.length ? codes[c] : 0;
+	}
+	
+	/** Pack the five characters starting at <CODE>s[from]</CODE> into a
+	 *  positive word. Characters past the end of the sequence are taken
+	 *  as blanks.
+	 */
+	public static int word(CharSequence s, int from)
+	{
+		int w = 0;
+		for(int i = from; i<from + MixVM.REGISTER_WIDTH; i++)
+			w = (w << MixByte.N_BITS) | (i<s.length() ? code(s.charAt(i)) : 0);
+		return w;
+	}
+	
+	/** Pack <CODE>5n</CODE> characters, starting at <CODE>chars[from]</CODE>,
+	 *  into <CODE>n</CODE> positive words stored from <CODE>words[at]</CODE>
+	 *  onwards. Return the index just past the last character used.
+	 */
+	public static int words(char[] chars, int from, int n, int[] words, int at)
+	{
+		for(int i = at; i<at + n; i++)
+		{
+			int w = 0;
+			for(int j = 0; j<MixVM.REGISTER_WIDTH; j++)
+			{
+				char c = chars[from++];
+				w = (w << MixByte.N_BITS) | (c<codes.length ? codes[c] : 0);
+			}
+			words[i] = w;
+		}
+		return from;
+	}
+	
 	public static MixByte number(char c)
 	{
-		int i;
-		for(i = 0; i<table.length; i++)
-			if(table[i]==c) break;
-		return new MixByte(i);
+		return new MixByte(code(c));
 	}
 }
@@ -0,0 +1,124 @@
+package mix.vm;
+
+import java.io.*;
+
+/** The environment of MIX virtual machines and assemblers: the opcode
+ *  table, the streams to which the character units are bound by default,
+ *  the stream receiving the log of the assembler, and the reporter of the
+ *  errors which cannot be thrown to the caller.
+ *
+ *  <P>A context is immutable: the <CODE>with</CODE> methods return a
+ *  modified copy. Machines and assemblers created with different contexts
+ *  share nothing, so that any number of them can run concurrently; none
+ *  of them uses Swing. The {@link #standard standard} context binds the
+ *  units to the console, as a stand-alone machine expects.</P>
+ */
+public final class MixContext
+{
+	/** Receives the errors which cannot be thrown to the caller, such as
+	 *  those of the output transfers running in the background.
+	 */
+	public interface Reporter
+	{
+		void report(Exception e);
+	}
+
+	private final OpcodeTable opcodes;
+	private final InputStream input;
+	private final PrintStream output;
+	private final PrintStream console;
+	private final PrintStream log;
+	private final Reporter reporter;
+
+	/** Create a context.
+	 *
+	 *  @param opcodes the opcode table, or null for the standard one,
+	 *  which is then loaded only when first needed
+	 *  @param input the input of the card reader (unit 16), or null
+	 *  @param output the output of the card punch and line printer
+	 *  (units 17 and 18), or null
+	 *  @param console the output of the typewriter and paper tape
+	 *  (units 19 and 20), or null
+	 *  @param log the log of the assembler, or null for none
+	 *  @param reporter the reporter of errors, or null to ignore them
+	 */
+	public MixContext(OpcodeTable opcodes, InputStream input, PrintStream output,
+		PrintStream console, PrintStream log, Reporter reporter)
+	{
+		this.opcodes = opcodes;
+		this.input = input;
+		this.output = output;
+		this.console = console;
+		this.log = log;
+		this.reporter = reporter;
+	}
+
+	/** Return a context with the standard opcode table, binding the card
+	 *  reader to the standard input, the card punch and the line printer
+	 *  to the standard output, and the typewriter and the paper tape to
+	 *  the standard error, where errors are also reported. The assembler
+	 *  does not log.
+	 */
+	public static MixContext standard()
+	{
+		return new MixContext(null, System.in, System.out, System.err,
+			null, new Reporter() {
+				public void report(Exception e)
+				{
+					e.printStackTrace();
+				}
+			});
+	}
+
+	public OpcodeTable getOpcodes()
+	{
+		return opcodes!=null ? opcodes : OpcodeTable.standard();
+	}
+
+	public InputStream getInput() { return input; }
+
+	public PrintStream getOutput() { return output; }
+
+	public PrintStream getConsole() { return console; }
+
+	/** Return the log of the assembler, or null. */
+	public PrintStream getLog() { return log; }
+
+	/** Report an error, unless errors are ignored. */
+	public void report(Exception e)
+	{
+		if(reporter!=null)
+			reporter.report(e);
+	}
+
+	public MixContext withOpcodes(OpcodeTable t)
+	{
+		return new MixContext(t, input, output, console, log, reporter);
+	}
+
+	public MixContext withInput(InputStream is)
+	{
+		return new MixContext(opcodes, is, output, console, log, reporter);
+	}
+
+	/** Return a copy binding all the output units to the given stream. */
+	public MixContext withOutput(PrintStream ps)
+	{
+		return new MixContext(opcodes, input, ps, ps, log, reporter);
+	}
+
+	public MixContext withConsole(PrintStream ps)
+	{
+		return new MixContext(opcodes, input, output, ps, log, reporter);
+	}
+
+	public MixContext withLog(PrintStream ps)
+	{
+		return new MixContext(opcodes, input, output, console, ps, reporter);
+	}
+
+	public MixContext withReporter(Reporter r)
+	{
+		return new MixContext(opcodes, input, output, console, log, r);
+	}
+}
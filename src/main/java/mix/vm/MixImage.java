@@ -0,0 +1,258 @@
+package mix.vm;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/** A binary memory image of a MIX program: the contents of the memory,
+ *  the start address and the symbol table. This is a compact alternative
+ *  to the text dump files written by {@link MixVM#dump MixVM.dump()},
+ *  which can be loaded with a single bulk transfer.
+ *
+ *  <P>An image file is made of big-endian integers, the words being in
+ *  the packed representation of {@link PackedWord}, as in the files of
+ *  the I/O units:</P>
+ *  <PRE>
+ *  magic       "MIX" followed by the format version, 1
+ *  start       the start address, or -1 if none
+ *  n_symbols   the number of symbols, followed, for each symbol, by its
+ *              name (as by DataOutput.writeUTF) and its value
+ *  n_ranges    the number of memory ranges, followed, for each range, by
+ *              its first address, its length, and its words
+ *  </PRE>
+ *  <P>Addresses not covered by any range hold zero. A dense image has a
+ *  single range covering the whole memory; a sparse image covers only
+ *  the non-zero words.</P>
+ */
+public final class MixImage
+{
+	/** The first four bytes of an image file. */
+	public static final int MAGIC = 0x4D495801;
+
+	/** The longest run of zero words that a sparse image keeps inside a
+	 *  range, rather than starting a new range (whose header takes as
+	 *  much room).
+	 */
+	private static final int MAX_GAP = 2;
+
+	private final int[] words;
+	private final int start;
+	private final Map<String, Integer> symbols;
+
+	/** Create an image of the given memory contents (packed words, indexed
+	 *  by address), start address (or -1) and symbol table, which may be
+	 *  null. The arguments are copied.
+	 */
+	public MixImage(int[] words, int start, Map<String, Integer> symbols)
+	{
+		this.words = new int[MixVM.MEMORY_SIZE];
+		System.arraycopy(words, 0, this.words, 0, Math.min(words.length, MixVM.MEMORY_SIZE));
+		this.start = start;
+		this.symbols = symbols==null ? Collections.<String, Integer>emptyMap()
+			: Collections.unmodifiableMap(new TreeMap<String, Integer>(symbols));
+	}
+
+	/** Return the packed content of a memory word.
+	 */
+	public int get(int address)
+	{
+		return words[address];
+	}
+
+	/** Copy the contents of the memory into the given array.
+	 */
+	public void copyTo(int[] image)
+	{
+		System.arraycopy(words, 0, image, 0, MixVM.MEMORY_SIZE);
+	}
+
+	/** Return the start address, or -1 if the image has none.
+	 */
+	public int getStart()
+	{
+		return start;
+	}
+
+	/** Return the symbol table, sorted by name.
+	 */
+	public Map<String, Integer> getSymbols()
+	{
+		return symbols;
+	}
+
+	/** Compute the ranges of a sparse image, as pairs of first address
+	 *  and length.
+	 */
+	private int[] ranges()
+	{
+		int[] r = new int[MixVM.MEMORY_SIZE + 1];
+		int n = 0;
+		int i = 0;
+		while(i<MixVM.MEMORY_SIZE)
+		{
+			if(words[i]==0)
+			{
+				i++;
+				continue;
+			}
+			int first = i;
+			int last = i;
+			while(++i<MixVM.MEMORY_SIZE)
+			{
+				if(words[i]!=0)
+					last = i;
+				else if(i - last>MAX_GAP)
+					break;
+			}
+			r[n++] = first;
+			r[n++] = last - first + 1;
+			i = last + 1;
+		}
+		return Arrays.copyOf(r, n);
+	}
+
+	/** Write the image to a stream, with a single range covering the
+	 *  whole memory or, if sparse, with the non-zero ranges only.
+	 *  The stream is not closed.
+	 */
+	public void write(OutputStream os, boolean sparse) throws IOException
+	{
+		int[] r = sparse ? ranges() : new int[] { 0, MixVM.MEMORY_SIZE };
+		ByteArrayOutputStream names = new ByteArrayOutputStream();
+		DataOutputStream table = new DataOutputStream(names);
+		for(Map.Entry<String, Integer> e : symbols.entrySet())
+		{
+			table.writeUTF(e.getKey());
+			table.writeInt(e.getValue().intValue());
+		}
+		int size = 4*4 + names.size() + 4*r.length;
+		for(int k = 1; k<r.length; k += 2)
+			size += 4*r[k];
+		ByteBuffer buf = ByteBuffer.allocate(size);
+		buf.putInt(MAGIC).putInt(start).putInt(symbols.size());
+		buf.put(names.toByteArray());
+		buf.putInt(r.length/2);
+		for(int k = 0; k<r.length; k += 2)
+		{
+			buf.putInt(r[k]).putInt(r[k + 1]);
+			buf.asIntBuffer().put(words, r[k], r[k + 1]);
+			buf.position(buf.position() + 4*r[k + 1]);
+		}
+		buf.flip();
+		WritableByteChannel ch = Channels.newChannel(os);
+		while(buf.hasRemaining())
+			ch.write(buf);
+	}
+
+	/** Write the image to a file.
+	 */
+	public void write(File f, boolean sparse) throws IOException
+	{
+		OutputStream os = new FileOutputStream(f);
+		try
+		{
+			write(os, sparse);
+		}
+		finally
+		{
+			os.close();
+		}
+	}
+
+	/** Read an image from a buffer, from its current position.
+	 */
+	public static MixImage read(ByteBuffer buf) throws IOException
+	{
+		buf.order(ByteOrder.BIG_ENDIAN);
+		try
+		{
+			if(buf.getInt()!=MAGIC)
+				throw new IOException("Not a MIX image");
+			int start = buf.getInt();
+			int n = buf.getInt();
+			Map<String, Integer> symbols = new TreeMap<String, Integer>();
+			for(int i = 0; i<n; i++)
+			{
+				String name = readUTF(buf);
+				symbols.put(name, Integer.valueOf(buf.getInt()));
+			}
+			int[] words = new int[MixVM.MEMORY_SIZE];
+			n = buf.getInt();
+			for(int i = 0; i<n; i++)
+			{
+				int first = buf.getInt();
+				int length = buf.getInt();
+				if(first<0 || length<0 || first + length>MixVM.MEMORY_SIZE)
+					throw new IOException("Bad range in MIX image: " + first + "+" + length);
+				buf.asIntBuffer().get(words, first, length);
+				buf.position(buf.position() + 4*length);
+			}
+			return new MixImage(words, start, symbols);
+		}
+		catch(BufferUnderflowException e)
+		{
+			throw new EOFException("Truncated MIX image");
+		}
+	}
+
+	/** Read a string written by DataOutput.writeUTF from a buffer.
+	 */
+	private static String readUTF(ByteBuffer buf) throws IOException
+	{
+		int length = buf.getShort() & 0xFFFF;
+		byte[] b = new byte[2 + length];
+		b[0] = (byte) (length >> 8);
+		b[1] = (byte) length;
+		buf.get(b, 2, length);
+		return new DataInputStream(new ByteArrayInputStream(b)).readUTF();
+	}
+
+	/** Read an image file, mapping it into memory.
+	 */
+	public static MixImage read(File f) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(f, "r");
+		try
+		{
+			FileChannel ch = file.getChannel();
+			return read(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/** Read an image from a stream, which is read to the end.
+	 */
+	public static MixImage read(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] b = new byte[8192];
+		int n;
+		while((n = is.read(b))>=0)
+			bytes.write(b, 0, n);
+		return read(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/** Check whether a file is an image file, by looking at its first
+	 *  four bytes.
+	 */
+	public static boolean isImage(File f) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new FileInputStream(f));
+		try
+		{
+			return in.readInt()==MAGIC;
+		}
+		catch(EOFException e)
+		{
+			return false;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
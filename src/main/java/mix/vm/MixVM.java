@@ -1,9 +1,7 @@
 package mix.vm;
 
 import java.io.*;
-import mix.ide.MemoryView;
-import mix.ide.RegisterView;
-import mix.ide.TerminalView;
+import java.util.Map;
 
 /**
  * The MIX virtual machine.
@@ -18,26 +16,50 @@ public class MixVM
 	public static final int MEMORY_SIZE = 4000;
 	public static final int N_IO_UNITS = 21;
 	
-	/** The Accumulator register.
+	/** The Accumulator register, in packed form (see {@link PackedWord}).
 	 */
-	protected MixWord rA;
+	protected int rA;
 	
-	/** The Extension register.
+	/** The Extension register, in packed form.
 	 */
-	protected MixWord rX;
+	protected int rX;
 	
-	/** The Jump address register.
+	/** The Jump address register, in packed form.
 	 */
-	protected MixWord rJ;
+	protected int rJ;
 	
-	/** The Location Pointer (i.e., the program counter).
+	/** The Location Pointer (i.e., the program counter), as an address.
 	 */
-	protected MixWord lp;
+	protected int lp;
 	
-	/** The six Index registers I1 to I6.
+	/** The six Index registers I1 to I6, in packed form.
 	 */
-	protected MixWord[] rI;
-	protected MixWord[] memory;
+	protected int[] rI;
+	
+	/** The memory, holding the words in packed form.
+	 */
+	protected Memory memory;
+	
+	/** The decoded-instruction cache.
+	 */
+	final DecodeCache decoded;
+	
+	/** The instruction being executed, reused at every step.
+	 */
+	private final Instruction current;
+	
+	/** Whether instructions are dispatched through the {@link OperationTable},
+	 *  rather than the switch of {@link Instruction#execute Instruction.execute()}.
+	 */
+	protected boolean tableDispatch;
+	
+	/** The translated basic blocks, used by {@link #runFast runFast()}.
+	 */
+	final Translator translator;
+	
+	/** Whether {@link #runFast runFast()} translates hot basic blocks.
+	 */
+	protected boolean translation;
 	
 	/** The overflow toggle. */
 	boolean overflow;
@@ -51,33 +73,92 @@ public class MixVM
 	 */
 	protected IOUnit[] u;
 	
-	/** Halt flag. */
-	protected boolean halted;
+	/** The execution profile, or null when not profiling. */
+	protected Profiler profiler;
+	
+	/** The undo journal, or null when not recording. */
+	protected Journal journal;
+	
+	/** The breakpoints and watchpoints. */
+	protected final Breakpoints breakpoints;
+	
+	/** The transfer buffer for the blocks of the I/O units. */
+	private int[] block = new int[100];
+	
+	/** The I/O worker. */
+	final IOScheduler io = new IOScheduler();
+	
+	/** Whether output blocks are written in the background. */
+	protected boolean asyncOutput = true;
+	
+	/** Halt flag, set by other threads to stop a run for good. */
+	protected volatile boolean halted;
+	
+	/** The control word of a run in progress, which other threads set to
+	 *  PAUSE to have it stop at the next poll; see {@link #pause pause()}.
+	 */
+	private volatile int control = RUN;
+
+	/** Set by {@link #detachViews detachViews()}. */
+	private volatile boolean detached;
+	
+	private static final int RUN = 0, PAUSE = 1;
         
         /** The internal clock. */
         protected long clock;
 	
 	/** View of the memory contents. */
-	protected MemoryView view;
+	protected MemoryObserver view;
 		
 	/** View of the registers. */
-	protected RegisterView regView;
+	protected RegisterObserver regView;
+	
+	/** The environment of the machine. */
+	protected final MixContext context;
 		
-	/** Creates an instance of the MIX virtual machine.
+	/** Creates an instance of the MIX virtual machine, in the
+	 *  {@link MixContext#standard standard} context.
 	 *
 	 */
 	public MixVM()
 	{
-		rA = new MixWord(REGISTER_WIDTH);
-		rX = new MixWord(REGISTER_WIDTH);
-		rJ = new MixWord(ADDRESS_WIDTH);
-        lp = new MixWord(ADDRESS_WIDTH);
-		rI = new MixWord[N_INDEX_REGISTERS];
-		for(int i = 0; i<N_INDEX_REGISTERS; i++)
-			rI[i] = new MixWord(ADDRESS_WIDTH);
-		memory = new MixWord[MEMORY_SIZE];
-		for(int i = 0; i<MEMORY_SIZE; i++)
-			memory[i] = new MixWord(REGISTER_WIDTH);
+		this(MixContext.standard(), new HeapMemory());
+	}
+	
+	/** Creates an instance of the MIX virtual machine running on the
+	 *  given memory backend, in the standard context.
+	 */
+	public MixVM(Memory m)
+	{
+		this(MixContext.standard(), m);
+	}
+	
+	/** Creates an instance of the MIX virtual machine in the given
+	 *  context, whose streams the character units are bound to.
+	 */
+	public MixVM(MixContext c)
+	{
+		this(c, new HeapMemory());
+	}
+	
+	/** Creates an instance of the MIX virtual machine running on the
+	 *  given memory backend, in the given context.
+	 */
+	public MixVM(MixContext c, Memory m)
+	{
+		context = c;
+		rA = 0;
+		rX = 0;
+		rJ = 0;
+		lp = 0;
+		rI = new int[N_INDEX_REGISTERS];
+		memory = m;
+		decoded = new DecodeCache(MEMORY_SIZE);
+		breakpoints = new Breakpoints(decoded);
+		current = new Instruction();
+		tableDispatch = true;
+		translator = new Translator(MEMORY_SIZE);
+		translation = true;
 		overflow = false;
 		comparison = 0;
 		
@@ -88,32 +169,36 @@ public class MixVM
 		// Units 0 through 15 have 100-word blocks:
 		for(int i = 0; i<=15; i++)
 			u[i].setBlockSize(100);
-		// Unit 16 is the 80-column card reader - in this emulation, the default input
+		// Unit 16 is the 80-column card reader - in this emulation, the input
+		// of the context
 		u[16].setBlockSize(16);
-		u[16].setInput(System.in);
-		// Unit 17 is the 80-column card punch - in this emulation, the output console
+		u[16].setInput(c.getInput());
+		// Unit 17 is the 80-column card punch - in this emulation, the output
+		// of the context
 		u[17].setBlockSize(16);
-		u[17].setOutput(System.out);
-		// Unit 18 is the line printer - in this emulation, the output console
+		u[17].setOutput(c.getOutput());
+		// Unit 18 is the line printer - in this emulation, the output
+		// of the context
 		u[18].setBlockSize(24);
-		u[18].setOutput(System.out);
-		// Unit 19 is the typewriter terminal - in this emulation, it will be
-		// the terminal view, but the error console by default
+		u[18].setOutput(c.getOutput());
+		// Unit 19 is the typewriter terminal - in this emulation, the console
+		// of the context, e.g., the terminal view of the IDE
 		u[19].setBlockSize(14);
-		u[19].setOutput(System.err);
-		// Unit 20 is the paper tape - in this emulation, the error console
+		u[19].setOutput(c.getConsole());
+		// Unit 20 is the paper tape - in this emulation, the console
+		// of the context
 		u[20].setBlockSize(14);
-		u[20].setOutput(System.err);
+		u[20].setOutput(c.getConsole());
 		halted = true;
                 resetClock();
 		view = null;
 	}
 	
-	/** Set the terminal view
+	/** Return the environment of this machine.
 	 */
-	public void setTerminal(TerminalView term)
+	public MixContext getContext()
 	{
-            u[19].setOutput(term.getPrintStream());
+		return context;
 	}
 	
 	/** Set the view for visualizing a snapshot of the memory contents.
@@ -121,12 +206,14 @@ public class MixVM
 	 *  is notified to the view, so that the snapshot on the screen is
 	 *  kept up to date.
 	 */
-	public void setView(MemoryView v)
+	public void setView(MemoryObserver v)
 	{
             view = v;
             if(view!=null)
-                for(int i = 0; i<MEMORY_SIZE; i++)
-                    view.update(i, memory[i]);
+            {
+                view.update();
+                view.refresh();
+            }
 	}
         
         /** Set the view for visualizing a snapshot of the registers.
@@ -134,24 +221,30 @@ public class MixVM
 	 *  is notified to the view, so that the snapshot on the screen is
 	 *  kept up to date.
          */
-        public void setRegisterView(RegisterView rv)
+        public void setRegisterView(RegisterObserver rv)
         {
             regView = rv;
         }
 
-	/** Return the new content for a register of a given width,
+	/** Disconnect the views of the machine, which is being discarded. A
+	 *  run in progress in another thread no longer updates them, not even
+	 *  when it ends.
+	 */
+	public synchronized void detachViews()
+	{
+		detached = true;
+		view = null;
+		regView = null;
+	}
+
+	/** Return the new (packed) content for a register of a given width,
 	 *  and set the OV toggle if appropriate.
 	 */	
-	protected MixWord setRegister(int width, int v)
+	protected int setRegister(int width, int v)
 	{
-		int sign = 1;
-		if(v<0)
-		{
-			sign = -1;
-			v = -v;
-		}
-		overflow = (v >> (width*MixByte.N_BITS))!=0;
-		return new MixWord(width, sign*v);
+		int magnitude = v<0 ? -v : v;
+		overflow = (magnitude >> (width*MixByte.N_BITS))!=0;
+		return PackedWord.valueOf(width, v);
 	}
 	
 	/** Check whether OV is on. If it is on, it is turned off,
@@ -194,15 +287,15 @@ public class MixVM
 	 */
 	public void compare(int v) { comparison = v; }
 	
-	public MixWord getAccumulator()	{ return rA; }
+	public MixWord getAccumulator()	{ return MixWord.unpack(REGISTER_WIDTH, rA); }
 	
 	public void setAccumulator(int v) { rA = setRegister(REGISTER_WIDTH, v); }
 	
-	public MixWord getExtension() {	return rX; }
+	public MixWord getExtension() {	return MixWord.unpack(REGISTER_WIDTH, rX); }
 	
 	public void setExtension(int v)	{ rX = setRegister(REGISTER_WIDTH, v); }
 	
-	public MixWord getExtendedAccumulator()	{ return new MixWord(rA, rX); }
+	public MixWord getExtendedAccumulator()	{ return new MixWord(getAccumulator(), getExtension()); }
 	
         /** Enters the given long value into the extended accumulator and
          *  sets the overflow toggle if appropriate. 
@@ -215,9 +308,9 @@ public class MixVM
 			sign = -1;
 			v = -v;
 		}
-		rX = new MixWord(REGISTER_WIDTH, (int) (sign*(v & MixWord.MAX_VALUE)));
+		rX = PackedWord.valueOf((int) (sign*(v & MixWord.MAX_VALUE)));
 		v >>= REGISTER_WIDTH*MixByte.N_BITS;
-		rA = new MixWord(REGISTER_WIDTH, (int) (sign*v));
+		rA = PackedWord.valueOf((int) (sign*v));
 		overflow = (v >> (REGISTER_WIDTH*MixByte.N_BITS))!=0;
 	}
 
@@ -228,10 +321,26 @@ public class MixVM
 	{
 		for(int i = 1; i<=REGISTER_WIDTH; i++)
 		{
-			rA.setByte(i, w.getByte(i));
-			rX.setByte(i, w.getByte(REGISTER_WIDTH + i));
+			rA = PackedWord.setByte(rA, i, w.getByte(i).intValue());
+			rX = PackedWord.setByte(rX, i, w.getByte(REGISTER_WIDTH + i).intValue());
 		}
 	}
+
+	/** Sets the magnitude of the double register rAX with the given
+	 *  60-bit value, without affecting the signs.
+	 */
+	void setExtendedMagnitude(long ext)
+	{
+		rA = (rA & PackedWord.SIGN) | PackedWord.high(ext);
+		rX = (rX & PackedWord.SIGN) | PackedWord.low(ext);
+	}
+
+	/** Returns the 60-bit magnitude of the double register rAX.
+	 */
+	long getExtendedMagnitude()
+	{
+		return PackedWord.extended(rA, rX);
+	}
 	
 	/** Sets the <CODE>rA</CODE> register with the given a floating-point value,
 	 *  and set the <CODE>OV</CODE> toggle if the magnitude of the provided value is too
@@ -255,25 +364,22 @@ public class MixVM
          *
          *  @since version 1.4
 	 */	
-	protected MixWord setAccumulator(double v)
+	protected void setAccumulator(double v)
 	{
-            rA.setSign(v<0 ? -1 : 1);
+            int sign = v<0 ? PackedWord.SIGN : 0;
             v = Math.abs(v);
             // Special case, zero
             if(v==0.0)
             {
-                rA.setByte(1, new MixByte(33));
-                for(int i = 0; i<4; i++)
-                    rA.setByte(REGISTER_WIDTH - i, new MixByte());
-                return rA;
+                rA = PackedWord.setByte(sign, 1, 33);
+                return;
             }
 	    overflow = v>=Math.pow(64.0, 31.0);
             // Special case, overflow:
             if(overflow)
             {
-                for(int i = 1; i<=REGISTER_WIDTH; i++)
-                    rA.setByte(i, new MixByte(MixByte.MAX_VALUE));
-                return rA;
+                rA = sign | MixWord.MAX_VALUE;
+                return;
             }
             /*
             // Determine, by dichotomic search, the exponent p:
@@ -297,67 +403,120 @@ public class MixVM
                 throw new RuntimeException("p = " + p + ", pmax = " + pmax);
              */
             // Excess 33 representation of the exponent:
-            rA.setByte(1, new MixByte(33 + p));
-            // Calculate the mantissa
+            rA = PackedWord.setByte(sign, 1, 33 + p);
+            // Calculate the mantissa, which fills bytes 2 to 5:
             int mantissa = (int) Math.floor(v*Math.pow(64.0, (double)(3 - p)));
-            for(int i = 0; i<4; i++)
-            {
-                rA.setByte(REGISTER_WIDTH - i, new MixByte(mantissa & MixByte.MAX_VALUE));
-                mantissa >>= MixByte.N_BITS;
-            }
-            return rA;
+            rA |= mantissa & 0xFFFFFF;
 	}
 	
 	public MixWord getIndexRegister(int i)
 	{
 		if(i>0 && i<=N_INDEX_REGISTERS)
-			return rI[i - 1];
+			return MixWord.unpack(ADDRESS_WIDTH, rI[i - 1]);
 		else
 			return new MixWord(ADDRESS_WIDTH);
 	}
 	
+	/** Return the integer value of an index register, or zero if
+	 *  <CODE>i</CODE> does not designate one of I1 to I6.
+	 */
+	int index(int i)
+	{
+		if(i>0 && i<=N_INDEX_REGISTERS)
+			return PackedWord.intValue(rI[i - 1]);
+		return 0;
+	}
+	
 	public void setIndexRegister(int i, int v)
 	{
 		if(i>0 && i<=N_INDEX_REGISTERS)
 			rI[i - 1] = setRegister(ADDRESS_WIDTH, v);
 	}
 	
-	public MixWord getJumpRegister() { return rJ; }
+	public MixWord getJumpRegister() { return MixWord.unpack(ADDRESS_WIDTH, rJ); }
 	
 	public void setJumpRegister(int v) { rJ = setRegister(ADDRESS_WIDTH, v); }
 	
 	/** Copy the location pointer to the jump register to prepare for a jump.
 	 */
-	public void setJumpRegister() { rJ = lp; }
+	public void setJumpRegister() { rJ = PackedWord.valueOf(ADDRESS_WIDTH, lp); }
 
-	public MixWord getLocationPtr() { return lp; }
+	public MixWord getLocationPtr() { return new MixWord(ADDRESS_WIDTH, lp); }
 	
 	public void setLocationPtr(int addr)
 	{
-		lp = new MixWord(ADDRESS_WIDTH, addr);
+		lp = PackedWord.intValue(PackedWord.valueOf(ADDRESS_WIDTH, addr));
 		if(view!=null)
+		{
 			view.setLocationPointer(addr);
+			view.refresh();
+		}
 	}
         
         public void setMemoryValue(int addr, MixWord value) {
-            memory[addr] = value;
+            int w = value.pack();
+            // Rewriting the same value must not lose the undo journal:
+            if(memory.get(addr)==w)
+                return;
+            memory.set(addr, w);
+            decoded.invalidate(addr);
+            translator.invalidate(addr);
+            forget();
         }
 	
 	/** Write an integer value to a memory word.
 	 */
 	public void write(int address, int value)
 	{
-            write(address, new MixWord(REGISTER_WIDTH, value));
+            store(address, PackedWord.valueOf(value));
+            forget();
 	}
 	
 	/** Write a memory word.
 	 */
 	public void write(int address, MixWord value)
 	{
-            memory[address] = value;
+            store(address, value.pack());
+            forget();
+	}
+	
+	/** Write a memory word packed as by {@link PackedWord}.
+	 */
+	public void writePacked(int address, int word)
+	{
+            store(address, word);
+            forget();
+	}
+	
+	/** Write a packed memory word.
+	 */
+	void store(int address, int word)
+	{
+            if(journal!=null)
+                journal.write(address, memory.get(address));
+            memory.set(address, word);
+            decoded.invalidate(address);
+            translator.invalidate(address);
+            if(view!=null)
+            {
+                view.update(address);
+                view.refresh();
+            }
+	}
+	
+	/** Write a packed value to the field of a memory word specified by
+	 *  the packed field specification 8L + R.
+	 */
+	void storeField(int address, int fspec, int word)
+	{
+            if(journal!=null)
+                journal.write(address, memory.get(address));
+            memory.store(address, fspec, word);
+            decoded.invalidate(address);
+            translator.invalidate(address);
             if(view!=null)
             {
-                view.update(address, memory[address]);
+                view.update(address);
                 view.refresh();
             }
 	}
@@ -371,32 +530,153 @@ public class MixVM
 	 */
 	public void write(int address, FieldSpecification fspec, MixWord value)
 	{
-            memory[address].subWord(fspec, value);
+            store(address, PackedWord.store(memory.get(address), fspec.first(), fspec.last(), value.pack()));
+            forget();
+	}
+	
+	/** Restore the old value of a memory word, while undoing an instruction.
+	 */
+	void revert(int address, int word)
+	{
+            memory.set(address, word);
+            decoded.invalidate(address);
+            translator.invalidate(address);
             if(view!=null)
-            {
-                view.update(address, memory[address]);
-                view.refresh();
-            }
+                view.update(address);
+	}
+	
+	/** Clear the undo journal, if any, after the memory has been modified
+	 *  other than by executing instructions.
+	 */
+	private void forget()
+	{
+            if(journal!=null)
+                journal.clear();
+	}
+	
+	/** Transfer a block from an I/O unit into memory, starting at the
+	 *  given address.
+	 */
+	void input(IOUnit unit, int address) throws IOException
+	{
+		clock = unit.begin(clock);
+		io.await();
+		int n = unit.getBlockSize();
+		if(block.length<n)
+			block = new int[n];
+		unit.read(block);
+		for(int i = 0; i<n; i++)
+			store(address + i, block[i]);
+	}
+	
+	/** Transfer a block from memory, starting at the given address,
+	 *  to an I/O unit, optionally followed by the end of a line.
+	 *  Unless asynchronous output is disabled, the block is copied and
+	 *  written by the I/O worker while the machine goes on.
+	 */
+	void output(IOUnit unit, int address, boolean newline) throws IOException
+	{
+		clock = unit.begin(clock);
+		int n = unit.getBlockSize();
+		int[] data = asyncOutput ? new int[n] : block.length<n ? (block = new int[n]) : block;
+		for(int i = 0; i<n; i++)
+			data[i] = memory.get(address + i);
+		if(asyncOutput)
+			io.submit(unit, data, newline);
+		else
+		{
+			io.await();
+			unit.write(data, newline);
+		}
+	}
+	
+	/** Prepare an I/O unit for a control operation (IOC): wait until it
+	 *  is ready, and until all pending transfers are complete.
+	 */
+	void control(IOUnit unit) throws IOException
+	{
+		clock = Math.max(clock, unit.readyAt());
+		io.await();
+	}
+	
+	/** Wait for all pending output transfers. Errors are reported to the
+	 *  context, since there is no instruction to throw them to.
+	 */
+	private void drain()
+	{
+		try
+		{
+			io.await();
+		}
+		catch(IOException e)
+		{
+			context.report(e);
+		}
 	}
 	
 	/** Read the content of a memory word.
 	 */
 	public MixWord read(int address)
 	{
-		return memory[address];
+		return memory.read(address);
+	}
+	
+	/** Get the memory backend of this machine, which gives direct
+	 *  access to the packed memory words. Words written directly to the
+	 *  backend bypass the decoded-instruction cache: call
+	 *  {@link #invalidate invalidate()} after doing so.
+	 */
+	public Memory getMemory()
+	{
+		return memory;
+	}
+	
+	/** Discard all decoded instructions, e.g., after the memory has been
+	 *  modified directly through its backend.
+	 */
+	public void invalidate()
+	{
+		decoded.invalidate();
+		translator.invalidate();
 	}
 	
 	/** Attach an I/O unit for both input and output.
 	 */
 	public void attach(int unit, File f)
 	{
+		drain();
 		u[unit].setFile(f);
 	}
 	
+	/** Attach a tape or disk unit (0 to 15) to a file mapped into memory;
+	 *  see {@link MappedIOUnit}. The unit previously attached is closed
+	 *  first, since it may truncate the same file.
+	 */
+	public void attachMapped(int unit, File f)
+	{
+		drain();
+		MappedIOUnit m = new MappedIOUnit();
+		m.setBlockSize(u[unit].getBlockSize());
+		m.setTransferTime(u[unit].getTransferTime());
+		u[unit].close();
+		m.setFile(f);
+		u[unit] = m;
+	}
+	
+	/** Close the files attached to all I/O units.
+	 */
+	public void close()
+	{
+		io.shutdown();
+		for(int i = 0; i<N_IO_UNITS; i++)
+			u[i].close();
+	}
+	
 	/** Attach an I/O unit to an input stream.
 	 */
 	public void attachInput(int unit, InputStream is)
 	{
+		drain();
 		u[unit].setInput(is);
 	}
 	
@@ -404,9 +684,46 @@ public class MixVM
 	 */
 	public void attachOutput(int unit, PrintStream ps)
 	{
+		drain();
 		u[unit].setOutput(ps);
 	}
 	
+	/** Enable or disable the timing of I/O transfers in MIX cycles.
+	 *  When enabled, each unit takes a nominal time to transfer a block,
+	 *  during which it is busy for <CODE>JBUS</CODE> and <CODE>JRED</CODE>,
+	 *  and a new transfer on it waits for the previous one to complete,
+	 *  as described in TAOCP, Section 1.4.4. When disabled (the default),
+	 *  units are never busy. The time of single units can be adjusted
+	 *  with {@link IOUnit#setTransferTime IOUnit.setTransferTime()}.
+	 */
+	public void setIOTiming(boolean b)
+	{
+		for(int i = 0; i<N_IO_UNITS; i++)
+		{
+			int t = 0;
+			if(b)
+			{
+				if(i<=7)
+					t = 1000;	// magnetic tape
+				else if(i<=15)
+					t = 500;	// disk or drum
+				else if(i==18)
+					t = 7500;	// line printer
+				else
+					t = 10000;	// card reader and punch, typewriter, paper tape
+			}
+			u[i].setTransferTime(t);
+		}
+	}
+	
+	/** Enable or disable asynchronous output (enabled by default).
+	 */
+	public void setAsyncOutput(boolean b)
+	{
+		drain();
+		asyncOutput = b;
+	}
+	
 	/** Get a reference to an I/O unit.
 	 */
 	public IOUnit unit(int n)
@@ -432,12 +749,366 @@ public class MixVM
 	{
 		if(halted)
 			throw new Exception("MIX halted!");
-		Instruction instr = new Instruction(memory[lp.increment()]);
-		instr.execute(this);
+		breakpoints.resume(lp);
+		advance();
+	}
+	
+	/** Perform an execution step, unless a breakpoint stops the machine
+	 *  before the instruction, and notify the views.
+	 *
+	 *  @return false if the machine stopped on a breakpoint
+	 */
+	private boolean advance() throws Exception
+	{
+		boolean executed = profiler!=null ? execute(profiler) : execute();
+		if(halted)
+			io.await();
 		if(view!=null)
-			view.setLocationPointer(lp.intValue());
+		{
+			view.setLocationPointer(lp);
+			view.refresh();
+		}
                 if(regView!=null)
                     regView.update(this);
+		return executed;
+	}
+	
+	/** Fetch, decode and execute the instruction at the location pointer,
+	 *  without notifying the views.
+	 *
+	 *  @return false if a breakpoint stopped the machine before the
+	 *  instruction, which was not executed
+	 */
+	private boolean execute() throws Exception
+	{
+		int addr = lp++;
+		int op = decoded.op[addr];
+		if(op==DecodeCache.INVALID)
+			op = decoded.decode(addr, memory.get(addr));
+		if((op & DecodeCache.BREAK)!=0 && breakpoints.check(this, addr, op, decoded.address[addr]))
+		{
+			lp = addr;
+			return false;
+		}
+		if(journal!=null)
+			journal.record(this, addr, op);
+		current.set(op, decoded.address[addr]);
+		if(tableDispatch)
+		{
+			current.index(this);
+			OperationTable.get(op).execute(this, current);
+		}
+		else
+			current.execute(this);
+		return true;
+	}
+	
+	/** Execute the instruction at the location pointer, recording its
+	 *  execution in the given profile.
+	 */
+	private boolean execute(Profiler p) throws Exception
+	{
+		int addr = lp;
+		long start = clock;
+		if(!execute())
+			return false;
+		p.record(addr, clock - start);
+		return true;
+	}
+	
+	/** Run the VM headless, for at most the given number of steps.
+	 *  The views are disconnected for the duration of the run, so that
+	 *  the loop does no per-instruction notification; when the run ends,
+	 *  because the VM halted, the step limit was reached, a breakpoint
+	 *  was hit, a pause was requested, the thread was interrupted or an
+	 *  exception was thrown, the views receive a single update covering
+	 *  all the memory words that changed. Meanwhile, the register view
+	 *  is updated whenever it has shown the previous update.
+	 *
+	 *  <P>Unless disabled with {@link #setTranslation setTranslation()},
+	 *  hot basic blocks are executed in translated form; see
+	 *  {@link Translator}. Translation is disabled while profiling,
+	 *  recording a {@link Journal}, or with {@link Breakpoints} set.</P>
+	 *
+	 *  @param maxSteps the maximum number of instructions to execute
+	 *  @return the number of instructions executed
+	 */
+	public long runFast(long maxSteps) throws Exception
+	{
+		if(halted)
+			throw new Exception("MIX halted!");
+		MemoryObserver v = view;
+		RegisterObserver rv = regView;
+		int[] before = v!=null ? memory.toArray() : null;
+		view = null;
+		regView = null;
+		Profiler p = profiler;
+		boolean translate = translation && tableDispatch && p==null && journal==null
+			&& breakpoints.isEmpty();
+		breakpoints.resume(lp);
+		long n = 0;
+		long polled = 0;
+		try
+		{
+			while(!halted && n<maxSteps)
+			{
+				Translator.Block b = translate ? translator.lookup(this, lp) : null;
+				if(b!=null)
+					n += b.execute(this, maxSteps - n);
+				else
+				{
+					if(p!=null ? !execute(p) : !execute())
+						break;
+					n++;
+				}
+				if(n - polled>=POLL_INTERVAL)
+				{
+					polled = n;
+					if(control!=RUN || Thread.currentThread().isInterrupted())
+						break;
+					// Keep the register view live, as often as it repaints:
+					if(rv!=null && !rv.isDirty())
+						synchronized(this)
+						{
+							if(!detached)
+								rv.sample(this);
+						}
+				}
+			}
+			if(halted)
+				io.await();
+		}
+		finally
+		{
+			synchronized(this)
+			{
+				if(!detached)
+				{
+					view = v;
+					regView = rv;
+				}
+				publish(before);
+			}
+		}
+		return n;
+	}
+	
+	/** Run the VM headless, as {@link #runFast(long) runFast()} does, for
+	 *  at most the given number of steps and MIX cycles. The cycle limit
+	 *  is checked between runs no longer than the cycles left, each step
+	 *  taking at least one cycle, so that the clock may end up a little
+	 *  past it, by the extra cycles of the last run.
+	 *
+	 *  @return the number of instructions executed
+	 */
+	public long runFast(long maxSteps, long maxCycles) throws Exception
+	{
+		long n = 0;
+		while(!halted && n<maxSteps && clock<maxCycles)
+		{
+			long chunk = Math.min(maxSteps - n, maxCycles - clock);
+			long k = runFast(chunk);
+			n += k;
+			// Stopped by a breakpoint, a pause or an interruption:
+			if(k<chunk && !halted)
+				break;
+		}
+		return n;
+	}
+	
+	/** How often, in steps, {@link #runFast runFast()} polls for pause
+	 *  requests and thread interruption.
+	 */
+	private static final int POLL_INTERVAL = 4096;
+	
+	/** Ask the run in progress in another thread, if any, to stop; it
+	 *  returns within {@link #POLL_INTERVAL} steps, at an instruction
+	 *  boundary, without halting the machine. A request made before the
+	 *  run reaches {@link #runFast runFast()} stops it as well: the request
+	 *  holds until {@link #clearPause clearPause()} is called.
+	 */
+	public void pause()
+	{
+		control = PAUSE;
+	}
+	
+	/** Withdraw a pause request, before starting a new run.
+	 */
+	public void clearPause()
+	{
+		control = RUN;
+	}
+	
+	/** Notify the views of the current state, as a single update
+	 *  covering the memory words that differ from the given image.
+	 */
+	private void publish(int[] before)
+	{
+		if(view!=null)
+		{
+			for(int i = 0; i<MEMORY_SIZE; i++)
+			{
+				int w = memory.get(i);
+				if(before==null || before[i]!=w)
+					view.update(i);
+			}
+			view.setLocationPointer(lp);
+			view.refresh();
+		}
+		if(regView!=null)
+			regView.update(this);
+	}
+	
+	/** Select the dispatch engine: the table of specialized handlers
+	 *  (the default), or the reference switch statement.
+	 */
+	public void setTableDispatch(boolean b)
+	{
+		tableDispatch = b;
+	}
+	
+	/** Check whether instructions are dispatched through the handler table.
+	 */
+	public boolean isTableDispatch()
+	{
+		return tableDispatch;
+	}
+	
+	/** Enable or disable the translation of hot basic blocks in
+	 *  {@link #runFast runFast()}. Translation requires the table dispatch.
+	 */
+	public void setTranslation(boolean b)
+	{
+		translation = b;
+	}
+	
+	/** Check whether hot basic blocks are translated.
+	 */
+	public boolean isTranslation()
+	{
+		return translation;
+	}
+	
+	/** Attach a profiler, which will record every instruction executed
+	 *  from now on, or detach it by passing <CODE>null</CODE>.
+	 */
+	public void setProfiler(Profiler p)
+	{
+		profiler = p;
+	}
+	
+	/** Return the attached profiler, or <CODE>null</CODE>.
+	 */
+	public Profiler getProfiler()
+	{
+		return profiler;
+	}
+	
+	/** Attach an undo journal, which will record every instruction executed
+	 *  from now on so that it can be undone with {@link #stepBack stepBack()},
+	 *  or detach it by passing <CODE>null</CODE>.
+	 */
+	public void setJournal(Journal j)
+	{
+		journal = j;
+	}
+	
+	/** Return the attached undo journal, or <CODE>null</CODE>.
+	 */
+	public Journal getJournal()
+	{
+		return journal;
+	}
+	
+	/** Undo the last instruction executed, as recorded by the journal.
+	 *
+	 *  @return false if there is no journal, or no instruction to undo
+	 */
+	public boolean stepBack()
+	{
+		return stepBack(1)==1;
+	}
+	
+	/** Undo at most the given number of instructions.
+	 *
+	 *  @return the number of instructions undone
+	 */
+	public int stepBack(int n)
+	{
+		int k = 0;
+		if(journal!=null)
+			while(k<n && journal.undo(this))
+				k++;
+		if(k>0)
+			undone();
+		return k;
+	}
+	
+	/** Notify the views after undoing instructions; the memory words
+	 *  have been updated as they were reverted.
+	 */
+	private void undone()
+	{
+		if(view!=null)
+		{
+			view.setLocationPointer(lp);
+			view.refresh();
+		}
+		if(regView!=null)
+			regView.update(this);
+	}
+	
+	/** Undo instructions until the location pointer is at the given
+	 *  address, i.e., until just before the last execution of the
+	 *  instruction there, undoing at least one.
+	 *
+	 *  @return the number of instructions undone; if the address was not
+	 *  reached, the journal has been exhausted
+	 */
+	public int runBack(int address)
+	{
+		int k = 0;
+		if(journal!=null)
+			while(journal.undo(this))
+			{
+				k++;
+				if(lp==address)
+					break;
+			}
+		if(k>0)
+			undone();
+		return k;
+	}
+	
+	/** Undo instructions until a breakpoint or watchpoint would stop the
+	 *  machine before the instruction at the location pointer, i.e., until
+	 *  just before the last time the machine would have stopped, undoing
+	 *  at least one.
+	 *
+	 *  @return the number of instructions undone; if no breakpoint was
+	 *  reached, the journal has been exhausted
+	 */
+	public int runBack()
+	{
+		int k = 0;
+		if(journal!=null)
+			while(journal.undo(this))
+			{
+				k++;
+				int word = memory.get(lp);
+				if(breakpoints.test(this, lp, DecodeCache.encode(word), PackedWord.field(word, 0, 2)))
+					break;
+			}
+		if(k>0)
+			undone();
+		return k;
+	}
+	
+	/** Return the breakpoints and watchpoints of this machine.
+	 */
+	public Breakpoints getBreakpoints()
+	{
+		return breakpoints;
 	}
 	
 	/** Check whether the VM is halted.
@@ -478,25 +1149,52 @@ public class MixVM
             clock += cycles;
         }
 	
-	/** Run the VM.
+	/** Run the VM, until it halts or stops on a breakpoint.
 	 */
 	public void run() throws Exception
 	{
-            while(!isHalted())
-                step();
+            breakpoints.resume(lp);
+            while(!isHalted() && advance())
+                ;
 	}
 	
 	/** Dump the content of the memory to a file.
 	 */
 	public void dump(PrintStream ps)
 	{
-		for(int i = 0; i<MEMORY_SIZE; i++)
-			ps.println("" + i + ":\t" + memory[i]);
+		dump(ps, false);
+	}
+	
+	/** Dump the content of the memory to a file, either one line per word
+	 *  or, if compact, run-length encoded: a run of two or more identical
+	 *  words, e.g., the zeros between and after the parts of a program,
+	 *  takes a single line of the form
+	 *  <CODE>address*count: sign bytes</CODE>.
+	 */
+	public void dump(PrintStream ps, boolean compact)
+	{
+		int[] image = memory.toArray();
+		StringBuilder sb = new StringBuilder(32);
+		int i = 0;
+		while(i<MEMORY_SIZE)
+		{
+			int n = 1;
+			if(compact)
+				while(i + n<MEMORY_SIZE && image[i + n]==image[i])
+					n++;
+			sb.setLength(0);
+			sb.append(i);
+			if(n>1)
+				sb.append('*').append(n);
+			sb.append(":\t").append(PackedWord.toString(image[i]));
+			ps.println(sb);
+			i += n;
+		}
 	}
 	
 	/** Load the content of the memory from a file.
 	 *  The file must be a dump file produced by the {@link #dump dump()} method
-	 *  of this class or by the MIXAL assembler.
+	 *  of this class or by the MIXAL assembler, either in full or compact form.
 	 *
 	 *  @return the last address read.
 	 */
@@ -505,6 +1203,7 @@ public class MixVM
             StreamTokenizer st = new StreamTokenizer(new BufferedReader(new InputStreamReader(is)));
 
             int address = 0;
+            int count = 1;
             int sign = 1;
             MixWord word = null;
             int state = 0;
@@ -516,8 +1215,18 @@ public class MixVM
                             if(st.ttype!=st.TT_NUMBER)
                                     throw new IOException("Address expected at line " + st.lineno());
                             address = (int) st.nval;
+                            count = 1;
                             break;
                     case 1:
+                            if(st.ttype=='*')
+                            {
+                                    if(st.nextToken()!=st.TT_NUMBER || st.nval<1)
+                                            throw new IOException("Count expected at line " + st.lineno());
+                                    count = (int) st.nval;
+                                    if(address<0 || address + count>MEMORY_SIZE)
+                                            throw new IOException("Run past the end of memory at line " + st.lineno());
+                                    st.nextToken();
+                            }
                             if(st.ttype!=':')
                                     throw new IOException("':' expected at line " + st.lineno());
                             break;
@@ -540,10 +1249,98 @@ public class MixVM
                 }
                 if(++state==8)
                 {
-                    write(address, word);
+                    for(int i = 0; i<count; i++)
+                        write(address + i, word);
+                    address += count - 1;
                     state = 0;
                 }
             }
             return address;
 	}
+	
+	/** Take a snapshot of the state of the machine, after waiting for the
+	 *  pending output transfers. On a {@link PagedMemory}, the memory is
+	 *  not copied: its pages are shared until they are written.
+	 */
+	public Snapshot snapshot()
+	{
+		drain();
+		return new Snapshot(this);
+	}
+	
+	/** Restore the state of the machine from a snapshot, taken by this or
+	 *  another machine. The views, if any, are updated.
+	 */
+	public void restore(Snapshot s)
+	{
+		drain();
+		rA = s.rA;
+		rX = s.rX;
+		rJ = s.rJ;
+		lp = s.lp;
+		System.arraycopy(s.rI, 0, rI, 0, N_INDEX_REGISTERS);
+		overflow = s.overflow;
+		comparison = s.comparison;
+		halted = s.halted;
+		clock = s.clock;
+		for(int i = 0; i<N_IO_UNITS; i++)
+		{
+			u[i].position = s.positions[i];
+			u[i].readyAt = s.readyAt[i];
+		}
+		memory.restore(s.memory);
+		invalidate();
+		forget();
+		publish(null);
+	}
+	
+	/** Return a binary image of the content of the memory, with the given
+	 *  start address (or -1) and symbol table (or null).
+	 */
+	public MixImage image(int start, Map<String, Integer> symbols)
+	{
+		return new MixImage(memory.toArray(), start, symbols);
+	}
+	
+	/** Load the content of the whole memory from a binary image, in a
+	 *  single bulk copy.
+	 *
+	 *  @return the start address of the image or, if it has none, the
+	 *  last address, as {@link #load(InputStream) load()} does for a dump
+	 *  file written by {@link #dump dump()}.
+	 */
+	public int load(MixImage image)
+	{
+		int[] words = new int[MEMORY_SIZE];
+		image.copyTo(words);
+		memory.copyFrom(words);
+		invalidate();
+		forget();
+		if(view!=null)
+		{
+			view.update();
+			view.refresh();
+		}
+		return image.getStart()<0 ? MEMORY_SIZE - 1 : image.getStart();
+	}
+	
+	/** Load the content of the memory from a file, which may be either
+	 *  a binary image or a dump file, as recognized by its content.
+	 *
+	 *  @return the start address of the program, as above.
+	 */
+	public int load(File f) throws IOException
+	{
+		if(MixImage.isImage(f))
+			return load(MixImage.read(f));
+		InputStream in = new FileInputStream(f);
+		try
+		{
+			return load(in);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
 }
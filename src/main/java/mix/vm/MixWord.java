@@ -59,6 +59,27 @@ public class MixWord
 			part[wa.size() + i] = wx.part[i];
 	}
 	
+	/** Create a word of the given size from its packed representation
+	 *  (see {@link PackedWord}).
+	 */
+	public static MixWord unpack(int n_bytes, int packed)
+	{
+		MixWord w = new MixWord(n_bytes, PackedWord.magnitude(packed));
+		w.sign = PackedWord.isNegative(packed);
+		return w;
+	}
+	
+	/** Return the packed representation of the word (see {@link PackedWord}).
+	 *  Only bytes 1 to 5 are considered; 2-byte words have bytes 4 and 5.
+	 */
+	public int pack()
+	{
+		int v = 0;
+		for(int i = 1; i<=5; i++)
+			v = (v << MixByte.N_BITS) | getByte(i).intValue();
+		return PackedWord.pack(sign, v);
+	}
+	
 	/** Return the number of bytes of which the word consists of.
 	 */
 	public int size()
@@ -0,0 +1,125 @@
+package mix.vm;
+
+import java.io.*;
+import java.util.*;
+
+/** The table of the symbolic names of the MIX operations and of the
+ *  MIXAL directives, with their operation codes and default field
+ *  specifications, as read from a file like <CODE>opcodes.txt</CODE>:
+ *  <BLOCKQUOTE>
+ *    <CODE>FADD = 1</CODE><BR>
+ *    <CODE>FADD_F = 6</CODE>
+ *  </BLOCKQUOTE>
+ *
+ *  <P>A table is immutable once read, so that it can be shared by any
+ *  number of assemblers and virtual machines running concurrently; the
+ *  {@link #standard standard} table is loaded only once.</P>
+ */
+public final class OpcodeTable
+{
+	/** The resource holding the standard table. */
+	public static final String RESOURCE = "opcodes.txt";
+
+	private static OpcodeTable standard;
+
+	/** The operation code and the default field of each name. */
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+	private final Map<String, Integer> fields = new HashMap<String, Integer>();
+
+	/** The name of each operation, by "C F" for the operations with an
+	 *  explicit default field, or by "C" for the others.
+	 */
+	private final Map<String, String> names = new HashMap<String, String>();
+
+	/** Read a table in the format of <CODE>opcodes.txt</CODE>.
+	 */
+	public OpcodeTable(InputStream is) throws IOException
+	{
+		Properties p = new Properties();
+		p.load(is);
+		for(String name : p.stringPropertyNames())
+		{
+			int v;
+			try
+			{
+				v = Integer.parseInt(p.getProperty(name).trim());
+			}
+			catch(NumberFormatException e)
+			{
+				throw new IOException("Invalid opcode: " + name + " = " + p.getProperty(name));
+			}
+			if(name.endsWith("_F"))
+				fields.put(name.substring(0, name.length() - 2), v);
+			else
+				codes.put(name, v);
+		}
+		for(Map.Entry<String, Integer> e : codes.entrySet())
+		{
+			Integer F = fields.get(e.getKey());
+			names.put(F==null ? "" + e.getValue() : e.getValue() + " " + F, e.getKey());
+		}
+	}
+
+	/** Return the standard table, loading it from the
+	 *  {@link #RESOURCE resource} the first time.
+	 *
+	 *  @throws IllegalStateException if the resource cannot be read
+	 */
+	public static synchronized OpcodeTable standard()
+	{
+		if(standard==null)
+		{
+			InputStream is = OpcodeTable.class.getClassLoader().getResourceAsStream(RESOURCE);
+			if(is==null)
+				throw new IllegalStateException("Opcode table not found: " + RESOURCE);
+			try
+			{
+				try
+				{
+					standard = new OpcodeTable(is);
+				}
+				finally
+				{
+					is.close();
+				}
+			}
+			catch(IOException e)
+			{
+				throw new IllegalStateException("Cannot read the opcode table: " + e.getMessage(), e);
+			}
+		}
+		return standard;
+	}
+
+	/** Return the operation code of a symbolic name, or -1 if unknown.
+	 */
+	public int code(String name)
+	{
+		Integer C = codes.get(name);
+		return C==null ? -1 : C;
+	}
+
+	/** Return the default field specification of a symbolic name, which
+	 *  is 5, i.e., (0:5), unless specified otherwise.
+	 */
+	public int defaultField(String name)
+	{
+		Integer F = fields.get(name);
+		return F==null ? 5 : F;
+	}
+
+	/** Return the symbolic name of an operation: the one with the given
+	 *  default field, or else the one with an implicit default field,
+	 *  or else the first one with a default field from 0 to 5; "???" if
+	 *  there is none.
+	 */
+	public String name(int C, int F)
+	{
+		String s = names.get(C + " " + F);
+		if(s==null)
+			s = names.get("" + C);
+		for(int f = 0; s==null && f<6; f++)
+			s = names.get(C + " " + f);
+		return s!=null ? s : "???";
+	}
+}
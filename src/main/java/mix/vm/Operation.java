@@ -0,0 +1,21 @@
+package mix.vm;
+
+/**
+ * A handler executing one kind of MIX instruction, i.e., one (C, F)
+ * pair of the operation code and field, once the effective address
+ * <var>M</var> of the instruction has been computed.
+ *
+ * <P>Handlers are resolved once, when the {@link OperationTable} is built,
+ * so that the interpreter does not have to re-examine C and F at every
+ * step. Each handler does a single, small job.</P>
+ */
+abstract class Operation
+{
+	/**
+	 * Executes the instruction on the given MIX virtual machine.
+	 *
+	 * @param mix a MIX virtual machine
+	 * @param instr the instruction, with its effective address already set
+	 */
+	abstract void execute(MixVM mix, Instruction instr) throws Exception;
+}
@@ -0,0 +1,660 @@
+package mix.vm;
+
+/**
+ * The table-driven dispatch engine of the MIX interpreter.
+ *
+ * <P>The table maps every (C, F) pair to the {@link Operation} handler
+ * that executes it, so that an instruction is dispatched with a single
+ * array access, instead of the nested switch statements of
+ * {@link Instruction#execute Instruction.execute()}, which remains as the
+ * reference implementation. The handlers replicate its semantics, timing
+ * and error messages exactly.</P>
+ *
+ * <P>Registers are designated by the same numbers as in the operation
+ * codes of the load instructions: 0 for rA, 1 to 6 for rI1 to rI6, and
+ * 7 for rX. The store instructions add 8 for rJ and 9 for the zero
+ * register of STZ.</P>
+ */
+final class OperationTable
+{
+	/** The number of distinct values of C, and of F. */
+	static final int SIZE = 64;
+
+	/** The handlers, indexed by C + 64F, i.e., by the low twelve bits
+	 *  of an entry of the {@link DecodeCache}.
+	 */
+	private static final Operation[] table = new Operation[SIZE*SIZE];
+
+	private OperationTable()
+	{
+	}
+
+	/** Return the handler of the given decoded operation, as produced
+	 *  by {@link DecodeCache#encode DecodeCache.encode()}.
+	 */
+	static Operation get(int op)
+	{
+		return table[op & (SIZE*SIZE - 1)];
+	}
+
+	/** Install a handler for a given (C, F) pair.
+	 */
+	private static void put(int C, int F, Operation op)
+	{
+		table[C + SIZE*F] = op;
+	}
+
+	/** Install a handler for all values of F which do not have one yet.
+	 */
+	private static void fill(int C, Operation op)
+	{
+		for(int F = 0; F<SIZE; F++)
+			if(table[C + SIZE*F]==null)
+				table[C + SIZE*F] = op;
+	}
+
+	/** Return the integer value of a register.
+	 */
+	static int value(MixVM mix, int r)
+	{
+		if(r==0)
+			return PackedWord.intValue(mix.rA);
+		if(r==7)
+			return PackedWord.intValue(mix.rX);
+		return mix.index(r);
+	}
+
+	/** Return the packed content of a register.
+	 */
+	static int word(MixVM mix, int r)
+	{
+		switch(r)
+		{
+			case 0:
+				return mix.rA;
+			case 7:
+				return mix.rX;
+			case 8:
+				return mix.rJ;
+			case 9:
+				return 0;
+			default:
+				return mix.rI[r - 1];
+		}
+	}
+
+	/** Set the integer value of a register, setting the overflow
+	 *  toggle if it does not fit.
+	 */
+	static void load(MixVM mix, int r, int v)
+	{
+		if(r==0)
+			mix.setAccumulator(v);
+		else if(r==7)
+			mix.setExtension(v);
+		else
+			mix.setIndexRegister(r, v);
+	}
+
+	/** Set the packed content of a register.
+	 */
+	static void set(MixVM mix, int r, int w)
+	{
+		if(r==0)
+			mix.rA = w;
+		else if(r==7)
+			mix.rX = w;
+		else
+			mix.rI[r - 1] = w;
+	}
+
+	/** Jump to the given address, saving the location pointer in rJ.
+	 */
+	static void jump(MixVM mix, int M)
+	{
+		mix.setJumpRegister();
+		mix.setLocationPtr(M);
+	}
+
+	/** LDr and LDrN. */
+	static final class Load extends Operation
+	{
+		private final int r;
+		private final boolean negate;
+
+		Load(int r, boolean negate)
+		{
+			this.r = r;
+			this.negate = negate;
+		}
+
+		void execute(MixVM mix, Instruction in)
+		{
+			mix.tick(2);
+			int V = mix.memory.field(in.M, in.F);
+			load(mix, r, negate ? -V : V);
+		}
+	}
+
+	/** STr, STJ and STZ. */
+	static final class Store extends Operation
+	{
+		private final int r;
+
+		Store(int r)
+		{
+			this.r = r;
+		}
+
+		void execute(MixVM mix, Instruction in)
+		{
+			mix.tick(2);
+			mix.storeField(in.M, in.F, word(mix, r));
+		}
+	}
+
+	/** CMPr. */
+	static final class Compare extends Operation
+	{
+		private final int r;
+
+		Compare(int r)
+		{
+			this.r = r;
+		}
+
+		void execute(MixVM mix, Instruction in)
+		{
+			mix.tick(2);
+			mix.compare(value(mix, r) - mix.memory.field(in.M, in.F));
+		}
+	}
+
+	/** INCr and DECr. */
+	static final class Increment extends Operation
+	{
+		private final int r;
+		private final boolean negate;
+
+		Increment(int r, boolean negate)
+		{
+			this.r = r;
+			this.negate = negate;
+		}
+
+		void execute(MixVM mix, Instruction in)
+		{
+			mix.tick(1);
+			load(mix, r, value(mix, r) + (negate ? -in.M : in.M));
+		}
+	}
+
+	/** ENTr and ENNr. */
+	static final class Enter extends Operation
+	{
+		private final int r;
+		private final boolean negate;
+
+		Enter(int r, boolean negate)
+		{
+			this.r = r;
+			this.negate = negate;
+		}
+
+		void execute(MixVM mix, Instruction in)
+		{
+			mix.tick(1);
+			// Loading clears the overflow toggle, as for any M:
+			load(mix, r, negate ? -in.M : in.M);
+			if(in.M==0) // the sign of the instruction is kept
+				set(mix, r, negate ? in.S ^ PackedWord.SIGN : in.S);
+		}
+	}
+
+	/** Jr&lt;cond&gt;: the condition is tested by the subclass. */
+	static abstract class RegisterJump extends Operation
+	{
+		private final int r;
+
+		RegisterJump(int r)
+		{
+			this.r = r;
+		}
+
+		abstract boolean test(int v);
+
+		void execute(MixVM mix, Instruction in)
+		{
+			mix.tick(1);
+			if(test(value(mix, r)))
+				jump(mix, in.M);
+		}
+	}
+
+	/** Jumps on the overflow toggle and comparison indicator:
+	 *  the condition is tested by the subclass.
+	 */
+	static abstract class Jump extends Operation
+	{
+		abstract boolean test(MixVM mix);
+
+		void execute(MixVM mix, Instruction in)
+		{
+			mix.tick(1);
+			if(test(mix))
+				jump(mix, in.M);
+		}
+	}
+
+	/** Shift instructions: the shift is performed by the subclass,
+	 *  only if M is positive.
+	 */
+	static abstract class Shift extends Operation
+	{
+		abstract void shift(MixVM mix, int M) throws Exception;
+
+		void execute(MixVM mix, Instruction in) throws Exception
+		{
+			mix.tick(2);
+			if(in.M<=0) return; // "M must be nonnegative" (page 135).
+			shift(mix, in.M);
+		}
+	}
+
+	/** Invalid (C, F) pairs: ticks the clock as the valid instructions
+	 *  of the same group do, then throws an exception.
+	 */
+	static final class Invalid extends Operation
+	{
+		private final int cycles;
+		private final String message;
+
+		Invalid(int cycles, String message)
+		{
+			this.cycles = cycles;
+			this.message = message;
+		}
+
+		void execute(MixVM mix, Instruction in) throws Exception
+		{
+			mix.tick(cycles);
+			throw new InstructionNotImplementedException(in, message);
+		}
+	}
+
+	static
+	{
+		// NOP
+		fill(0, new Operation() {
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(1);
+			}
+		});
+
+		// Arithmetic operations
+		put(1, 6, new Operation() { // FADD
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(4); // Cf. TAOCP, Volume 2, page 224
+				mix.setAccumulator(PackedWord.doubleValue(mix.rA) + PackedWord.doubleValue(mix.memory.get(in.M)));
+			}
+		});
+		fill(1, new Operation() { // ADD
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(2);
+				mix.setAccumulator(PackedWord.intValue(mix.rA) + mix.memory.field(in.M, in.F));
+			}
+		});
+		put(2, 6, new Operation() { // FSUB
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(4); // Cf. TAOCP, Volume 2, page 224
+				mix.setAccumulator(PackedWord.doubleValue(mix.rA) - PackedWord.doubleValue(mix.memory.get(in.M)));
+			}
+		});
+		fill(2, new Operation() { // SUB
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(2);
+				mix.setAccumulator(PackedWord.intValue(mix.rA) - mix.memory.field(in.M, in.F));
+			}
+		});
+		put(3, 6, new Operation() { // FMUL
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(9); // Cf. TAOCP, Volume 2, page 224
+				mix.setAccumulator(PackedWord.doubleValue(mix.rA)*PackedWord.doubleValue(mix.memory.get(in.M)));
+			}
+		});
+		fill(3, new Operation() { // MUL
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(10);
+				mix.setExtendedAccumulator(PackedWord.intValue(mix.rA)*(long) mix.memory.field(in.M, in.F));
+			}
+		});
+		put(4, 6, new Operation() { // FDIV
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(11); // Cf. TAOCP, Volume 2, page 224
+				mix.setAccumulator(PackedWord.doubleValue(mix.rA)/PackedWord.doubleValue(mix.memory.get(in.M)));
+			}
+		});
+		fill(4, new Operation() { // DIV
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(12);
+				int V = mix.memory.field(in.M, in.F);
+				long dividend = PackedWord.sign(mix.rA)*mix.getExtendedMagnitude();
+				mix.setExtension((int) dividend%V);
+				long quotient = dividend/V;
+				if(quotient<-MixWord.MAX_VALUE || quotient>MixWord.MAX_VALUE)
+					mix.setAccumulator(0x40000000); // to set the OV toggle...
+				else
+					mix.setAccumulator((int) quotient);
+			}
+		});
+
+		// Special operations
+		put(5, 0, new Operation() { // NUM
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(10);
+				long ext = mix.getExtendedMagnitude();
+				int n = 0;
+				int unit = 1;
+				for(int i = 2*MixVM.REGISTER_WIDTH; i>0; i--)
+				{
+					int b = ((int) ext & MixByte.MAX_VALUE)%10;
+					ext >>>= MixByte.N_BITS;
+					n += b*unit;
+					unit *= 10;
+				}
+				mix.setAccumulator(n*PackedWord.sign(mix.rA));
+			}
+		});
+		put(5, 1, new Operation() { // CHAR
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(10);
+				String s = String.valueOf(PackedWord.intValue(mix.rA));
+				if(s.charAt(0)=='-')
+					s = s.substring(1);
+				long ext = 0;
+				for(int i = 1; i<=2*MixVM.REGISTER_WIDTH; i++)
+				{
+					int b = 0;
+					int j = s.length() - 2*MixVM.REGISTER_WIDTH + i - 1;
+					if(j>=0)
+						b = s.charAt(j) - 18;
+					ext = (ext << MixByte.N_BITS) | (b & MixByte.MAX_VALUE);
+				}
+				mix.setExtendedMagnitude(ext);
+			}
+		});
+		put(5, 2, new Operation() { // HLT
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(10);
+				mix.halt();
+			}
+		});
+		put(5, 6, new Operation() { // FLOT
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(3); // Cf. TAOCP, Volume 2, page 224
+				mix.setAccumulator((double) PackedWord.intValue(mix.rA));
+			}
+		});
+		put(5, 7, new Operation() { // FIX
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(3); // Cf. TAOCP, Volume 2, page 224
+				double d = PackedWord.doubleValue(mix.rA);
+				int n;
+				if(Math.abs(d)<Math.pow(64.0, 5.0))
+					n = (int) Math.round(d);
+				else
+					n = MixWord.MAX_VALUE*(int)Math.signum(d);
+				mix.setAccumulator(n);
+			}
+		});
+		fill(5, new Invalid(0, "Unknown special instruction!"));
+
+		// Byte shift operations
+		put(6, 0, new Shift() { // SLA
+			void shift(MixVM mix, int M)
+			{
+				mix.rA = PackedWord.shiftLeft(mix.rA, M);
+			}
+		});
+		put(6, 1, new Shift() { // SRA
+			void shift(MixVM mix, int M)
+			{
+				mix.rA = PackedWord.shiftRight(mix.rA, M);
+			}
+		});
+		put(6, 2, new Shift() { // SLAX
+			void shift(MixVM mix, int M)
+			{
+				mix.setExtendedMagnitude(PackedWord.shiftLeft(mix.getExtendedMagnitude(), M));
+			}
+		});
+		put(6, 3, new Shift() { // SRAX
+			void shift(MixVM mix, int M)
+			{
+				mix.setExtendedMagnitude(PackedWord.shiftRight(mix.getExtendedMagnitude(), M));
+			}
+		});
+		put(6, 4, new Shift() { // SLC
+			void shift(MixVM mix, int M)
+			{
+				mix.setExtendedMagnitude(PackedWord.rotateLeft(mix.getExtendedMagnitude(), M));
+			}
+		});
+		put(6, 5, new Shift() { // SRC
+			void shift(MixVM mix, int M)
+			{
+				mix.setExtendedMagnitude(PackedWord.rotateRight(mix.getExtendedMagnitude(), M));
+			}
+		});
+		put(6, 6, new Shift() { // SLB
+			void shift(MixVM mix, int M)
+			{
+				mix.setExtendedMagnitude(PackedWord.shiftLeftBinary(mix.getExtendedMagnitude(), M));
+			}
+		});
+		put(6, 7, new Shift() { // SRB
+			void shift(MixVM mix, int M)
+			{
+				mix.setExtendedMagnitude(PackedWord.shiftRightBinary(mix.getExtendedMagnitude(), M));
+			}
+		});
+		fill(6, new Operation() {
+			void execute(MixVM mix, Instruction in) throws Exception
+			{
+				mix.tick(2);
+				if(in.M<=0) return;
+				throw new InstructionNotImplementedException(in, "Unknown shift instruction!");
+			}
+		});
+
+		// MOVE
+		fill(7, new Operation() {
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(1 + 2*in.F);
+				int dest = mix.index(1);
+				mix.setIndexRegister(1, dest + in.F);
+				for(int i = 0; i<in.F; i++)
+					mix.store(dest + i, mix.memory.get(in.M + i));
+			}
+		});
+
+		// Loading, storing and comparison operations
+		for(int r = 0; r<8; r++)
+		{
+			fill(8 + r, new Load(r, false));
+			fill(16 + r, new Load(r, true));
+			fill(24 + r, new Store(r));
+			fill(56 + r, new Compare(r));
+		}
+		fill(32, new Store(8)); // STJ
+		fill(33, new Store(9)); // STZ
+		put(56, 6, new Operation() { // FCMP
+			void execute(MixVM mix, Instruction in)
+			{
+				// Cf. the reference implementation for the use of location 0.
+				mix.tick(4); // Cf. TAOCP, Volume 2, page 224
+				double epsilon = PackedWord.doubleValue(mix.memory.get(0));
+				double diff = PackedWord.doubleValue(mix.rA) - PackedWord.doubleValue(mix.memory.get(in.M));
+				int comparison = 0;
+				if(diff>epsilon) comparison = 1;
+				if(diff<-epsilon) comparison = -1;
+				mix.compare(comparison);
+			}
+		});
+
+		// Input-output operations
+		fill(34, new Operation() { // JBUS
+			void execute(MixVM mix, Instruction in) throws Exception
+			{
+				mix.tick(1);
+				if(in.F>=MixVM.N_IO_UNITS)
+					throw new InstructionNotImplementedException(in, "Invalid I/O unit!");
+				if(mix.unit(in.F).isBusy(mix.clock))
+					jump(mix, in.M);
+			}
+		});
+		fill(35, new Operation() { // IOC
+			void execute(MixVM mix, Instruction in) throws Exception
+			{
+				mix.tick(1);
+				int F = in.F;
+				if(F<MixVM.N_IO_UNITS)
+					mix.control(mix.unit(F));
+				if(F<=7) // Magnetic tape
+					mix.unit(F).seek(in.M);
+				else if(in.M!=0 || F==16 || F==17 || F==19 || F>20)
+					throw new InstructionNotImplementedException(in, "Improper I/O control!");
+				else if(F==18) // Line printer
+					mix.unit(F).pagebreak();
+				else if(F==20) // Paper tape
+					mix.unit(F).seek(0);
+			}
+		});
+		fill(36, new Operation() { // IN
+			void execute(MixVM mix, Instruction in) throws Exception
+			{
+				mix.tick(1);
+				IOUnit u = mix.unit(in.F);
+				if(u==null)
+					throw new InstructionNotImplementedException(in, "Invalid I/O unit!");
+				mix.input(u, in.M);
+			}
+		});
+		fill(37, new Operation() { // OUT
+			void execute(MixVM mix, Instruction in) throws Exception
+			{
+				mix.tick(1);
+				IOUnit u = mix.unit(in.F);
+				if(u==null)
+					throw new InstructionNotImplementedException(in, "Invalid I/O unit!");
+				mix.output(u, in.M, in.F>=16);
+			}
+		});
+		fill(38, new Operation() { // JRED
+			void execute(MixVM mix, Instruction in) throws Exception
+			{
+				mix.tick(1);
+				if(in.F>=MixVM.N_IO_UNITS)
+					throw new InstructionNotImplementedException(in, "Invalid I/O unit!");
+				if(mix.unit(in.F).isReady(mix.clock))
+					jump(mix, in.M);
+			}
+		});
+
+		// Jump operations
+		put(39, 0, new Operation() { // JMP
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(1);
+				jump(mix, in.M);
+			}
+		});
+		put(39, 1, new Operation() { // JSJ
+			void execute(MixVM mix, Instruction in)
+			{
+				mix.tick(1);
+				mix.setLocationPtr(in.M);
+			}
+		});
+		put(39, 2, new Jump() { // JOV
+			boolean test(MixVM mix) { return mix.overflow(); }
+		});
+		put(39, 3, new Jump() { // JNOV
+			boolean test(MixVM mix) { return !mix.overflow(); }
+		});
+		put(39, 4, new Jump() { // JL
+			boolean test(MixVM mix) { return mix.cmpL(); }
+		});
+		put(39, 5, new Jump() { // JE
+			boolean test(MixVM mix) { return mix.cmpE(); }
+		});
+		put(39, 6, new Jump() { // JG
+			boolean test(MixVM mix) { return mix.cmpG(); }
+		});
+		put(39, 7, new Jump() { // JGE
+			boolean test(MixVM mix) { return mix.cmpGE(); }
+		});
+		put(39, 8, new Jump() { // JNE
+			boolean test(MixVM mix) { return mix.cmpNE(); }
+		});
+		put(39, 9, new Jump() { // JLE
+			boolean test(MixVM mix) { return mix.cmpLE(); }
+		});
+		for(int r = 0; r<8; r++)
+		{
+			put(40 + r, 0, new RegisterJump(r) { // JrN
+				boolean test(int v) { return v<0; }
+			});
+			put(40 + r, 1, new RegisterJump(r) { // JrZ
+				boolean test(int v) { return v==0; }
+			});
+			put(40 + r, 2, new RegisterJump(r) { // JrP
+				boolean test(int v) { return v>0; }
+			});
+			put(40 + r, 3, new RegisterJump(r) { // JrNN
+				boolean test(int v) { return v>=0; }
+			});
+			put(40 + r, 4, new RegisterJump(r) { // JrNZ
+				boolean test(int v) { return v!=0; }
+			});
+			put(40 + r, 5, new RegisterJump(r) { // JrNP
+				boolean test(int v) { return v<=0; }
+			});
+			put(40 + r, 6, new RegisterJump(r) { // JrE
+				boolean test(int v) { return v%2==0; }
+			});
+			put(40 + r, 7, new RegisterJump(r) { // JrO
+				boolean test(int v) { return v%2!=0; }
+			});
+		}
+		Operation invalidJump = new Invalid(1, "Unknown jump instruction!");
+		for(int C = 39; C<48; C++)
+			fill(C, invalidJump);
+
+		// Address transfer operations
+		Operation invalidTransfer = new Invalid(1, "Unknown address transfer instruction!");
+		for(int r = 0; r<8; r++)
+		{
+			put(48 + r, 0, new Increment(r, false));
+			put(48 + r, 1, new Increment(r, true));
+			put(48 + r, 2, new Enter(r, false));
+			put(48 + r, 3, new Enter(r, true));
+			fill(48 + r, invalidTransfer);
+		}
+	}
+}
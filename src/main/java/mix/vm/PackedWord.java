@@ -0,0 +1,330 @@
+package mix.vm;
+
+/** This class implements an alternative representation of a MIX word,
+ *  where the sign and the five bytes are packed into a single primitive
+ *  <CODE>int</CODE>: bits 0 to 29 hold the 30-bit magnitude (byte 5 being
+ *  the least significant byte), and bit 31 holds the sign, according to
+ *  the convention 0 = positive, 1 = negative. Bit 30 is always zero.
+ *
+ *  <P>Two-byte words (the index registers and the jump register) use the
+ *  same representation, with bytes 1 to 3 always equal to zero, exactly
+ *  as a <CODE>MixWord</CODE> of size 2 behaves when accessed through
+ *  {@link MixWord#getByte getByte()}.</P>
+ *
+ *  <P>The double register rAX is represented by the magnitudes of rA and
+ *  rX joined into a 60-bit <CODE>long</CODE>, its sign being the sign of rA.</P>
+ *
+ *  <P>All methods are static and allocation-free, so that the virtual
+ *  machine can use them in its inner loop.</P>
+ */
+public final class PackedWord
+{
+	/** The sign bit. */
+	public static final int SIGN = 0x80000000;
+
+	/** The mask of the magnitude, i.e., of bytes 1 to 5. */
+	public static final int MAGNITUDE = MixWord.MAX_VALUE;
+
+	/** The mask of the magnitude of the double register rAX. */
+	public static final long EXTENDED_MAGNITUDE = 0xFFFFFFFFFFFFFFFL;
+
+	private PackedWord()
+	{
+	}
+
+	/** Pack a sign and a magnitude into a word. Only the 30 least
+	 *  significant bits of the magnitude are retained.
+	 */
+	public static int pack(boolean negative, int magnitude)
+	{
+		return (negative ? SIGN : 0) | (magnitude & MAGNITUDE);
+	}
+
+	/** Return the word with the given integer value. As with the
+	 *  <CODE>MixWord(5, v)</CODE> constructor, the value is silently
+	 *  truncated to the five bytes of the word.
+	 */
+	public static int valueOf(int v)
+	{
+		return v<0 ? SIGN | (-v & MAGNITUDE) : v & MAGNITUDE;
+	}
+
+	/** Return the word of the given width (in bytes) with the given
+	 *  integer value, truncated to that width.
+	 */
+	public static int valueOf(int width, int v)
+	{
+		int mask = width>=MixVM.REGISTER_WIDTH ? MAGNITUDE : (1 << (MixByte.N_BITS*width)) - 1;
+		return v<0 ? SIGN | (-v & mask) : v & mask;
+	}
+
+	/** Check whether the word is negative (this includes the minus zero).
+	 */
+	public static boolean isNegative(int w)
+	{
+		return w<0;
+	}
+
+	/** Return the sign of the word as an integer: -1 for negative
+	 *  or +1 for positive.
+	 */
+	public static int sign(int w)
+	{
+		return w<0 ? -1 : 1;
+	}
+
+	/** Return the word with its sign replaced, according to the
+	 *  same convention as {@link MixWord#setSign MixWord.setSign()}.
+	 */
+	public static int withSign(int w, int s)
+	{
+		return s<0 ? w | SIGN : w & MAGNITUDE;
+	}
+
+	/** Return the magnitude (the absolute value) of the word.
+	 */
+	public static int magnitude(int w)
+	{
+		return w & MAGNITUDE;
+	}
+
+	/** Return the integer value of the word.
+	 */
+	public static int intValue(int w)
+	{
+		return w<0 ? -(w & MAGNITUDE) : w;
+	}
+
+	/** Return a single byte of the word. Positions outside 1 to 5
+	 *  yield zero.
+	 */
+	public static int getByte(int w, int pos)
+	{
+		if(pos<1 || pos>MixVM.REGISTER_WIDTH)
+			return 0;
+		return (w >> (MixByte.N_BITS*(MixVM.REGISTER_WIDTH - pos))) & MixByte.MAX_VALUE;
+	}
+
+	/** Return the word with a single byte replaced. Positions outside
+	 *  1 to 5 leave the word unchanged.
+	 */
+	public static int setByte(int w, int pos, int b)
+	{
+		if(pos<1 || pos>MixVM.REGISTER_WIDTH)
+			return w;
+		int shift = MixByte.N_BITS*(MixVM.REGISTER_WIDTH - pos);
+		return (w & ~(MixByte.MAX_VALUE << shift)) | ((b & MixByte.MAX_VALUE) << shift);
+	}
+
+	/** Return the integer value of the field (L:R) of the word.
+	 *  If the field specification includes position zero, then the sign
+	 *  of the word is considered, otherwise the value is always positive.
+	 *  This is the same as <CODE>subWord(fspec).intValue()</CODE> on a
+	 *  <CODE>MixWord</CODE>.
+	 */
+	public static int field(int w, int L, int R)
+	{
+		boolean negative = false;
+		if(L==0)
+		{
+			negative = w<0;
+			L = 1;
+		}
+		if(L>R)
+			return 0;
+		int v;
+		if(R<=MixVM.REGISTER_WIDTH)
+			v = (w & MAGNITUDE) >>> (MixByte.N_BITS*(MixVM.REGISTER_WIDTH - R));
+		else // bytes past position 5 are taken as zero
+			v = (int) (((long) (w & MAGNITUDE)) << (MixByte.N_BITS*(R - MixVM.REGISTER_WIDTH)));
+		int n_bytes = R - L + 1;
+		if(n_bytes<MixVM.REGISTER_WIDTH)
+			v &= (1 << (MixByte.N_BITS*n_bytes)) - 1;
+		return negative ? -v : v;
+	}
+
+	/** Return the integer value of the field of the word specified by
+	 *  the given packed field specification 8L + R.
+	 */
+	public static int field(int w, int fspec)
+	{
+		return field(w, fspec/8, fspec%8);
+	}
+
+	/** Assign a value to the specified field of a word, and return the
+	 *  resulting word.
+	 *  On an <EM>assignment</EM> operation, the field specification has the
+	 *  opposite meaning from the <EM>get</EM> operation: the number
+	 *  of bytes in the field is taken from the right-hand of the source
+	 *  and shifted <EM>left</EM> if necessary to be inserted into the
+	 *  specified field of the destination word.
+	 */
+	public static int store(int dest, int L, int R, int source)
+	{
+		if(L==0)
+		{
+			dest = (dest & MAGNITUDE) | (source & SIGN);
+			L = 1;
+		}
+		if(R>MixVM.REGISTER_WIDTH)
+			R = MixVM.REGISTER_WIDTH;
+		if(L>R)
+			return dest;
+		int shift = MixByte.N_BITS*(MixVM.REGISTER_WIDTH - R);
+		int n_bytes = R - L + 1;
+		int mask = (n_bytes<MixVM.REGISTER_WIDTH ? (1 << (MixByte.N_BITS*n_bytes)) - 1 : MAGNITUDE) << shift;
+		return (dest & ~mask) | ((source << shift) & mask);
+	}
+
+	/** Assign a value to the field of a word specified by the given
+	 *  packed field specification 8L + R, and return the resulting word.
+	 */
+	public static int store(int dest, int fspec, int source)
+	{
+		return store(dest, fspec/8, fspec%8, source);
+	}
+
+	/** Return the double-precision floating-point value of the word,
+	 *  according to the base 64 floating-point representation described in
+	 *  {@link MixWord#doubleValue MixWord.doubleValue()}.
+	 */
+	public static double doubleValue(int w)
+	{
+		double mantissa = (double) (w & 0xFFFFFF);
+		if(w<0)
+			mantissa *= -1.0;
+		return mantissa*Math.pow(64.0, ((double) getByte(w, 1)) - 36.0);
+	}
+
+	/** Shift left the magnitude of the word by the specified number of bytes.
+	 *  The sign is unaffected.
+	 */
+	public static int shiftLeft(int w, int n)
+	{
+		if(n<=0)
+			return w;
+		if(n>=MixVM.REGISTER_WIDTH)
+			return w & SIGN;
+		return (w & SIGN) | ((w << (MixByte.N_BITS*n)) & MAGNITUDE);
+	}
+
+	/** Shift right the magnitude of the word by the specified number of bytes.
+	 *  The sign is unaffected.
+	 */
+	public static int shiftRight(int w, int n)
+	{
+		if(n<=0)
+			return w;
+		if(n>=MixVM.REGISTER_WIDTH)
+			return w & SIGN;
+		return (w & SIGN) | ((w & MAGNITUDE) >>> (MixByte.N_BITS*n));
+	}
+
+	/** Join the magnitudes of two words into the 60-bit magnitude of
+	 *  a double word, e.g., rAX.
+	 */
+	public static long extended(int high, int low)
+	{
+		return (((long) (high & MAGNITUDE)) << 30) | (low & MAGNITUDE);
+	}
+
+	/** Return the magnitude of the high half (bytes 1 to 5) of a double word.
+	 */
+	public static int high(long ext)
+	{
+		return (int) (ext >>> 30) & MAGNITUDE;
+	}
+
+	/** Return the magnitude of the low half (bytes 6 to 10) of a double word.
+	 */
+	public static int low(long ext)
+	{
+		return (int) ext & MAGNITUDE;
+	}
+
+	/** Shift left a double word by the specified number of bytes.
+	 */
+	public static long shiftLeft(long ext, int n)
+	{
+		if(n<=0)
+			return ext;
+		if(n>=2*MixVM.REGISTER_WIDTH)
+			return 0;
+		return (ext << (MixByte.N_BITS*n)) & EXTENDED_MAGNITUDE;
+	}
+
+	/** Shift right a double word by the specified number of bytes.
+	 */
+	public static long shiftRight(long ext, int n)
+	{
+		if(n<=0)
+			return ext;
+		if(n>=2*MixVM.REGISTER_WIDTH)
+			return 0;
+		return (ext & EXTENDED_MAGNITUDE) >>> (MixByte.N_BITS*n);
+	}
+
+	/** Rotate left a double word by the specified number of bytes.
+	 */
+	public static long rotateLeft(long ext, int n)
+	{
+		n = n % (2*MixVM.REGISTER_WIDTH);
+		if(n<=0)
+			return ext;
+		int bits = MixByte.N_BITS*n;
+		return ((ext << bits) | (ext >>> (60 - bits))) & EXTENDED_MAGNITUDE;
+	}
+
+	/** Rotate right a double word by the specified number of bytes.
+	 */
+	public static long rotateRight(long ext, int n)
+	{
+		n = n % (2*MixVM.REGISTER_WIDTH);
+		if(n<=0)
+			return ext;
+		int bits = MixByte.N_BITS*n;
+		return ((ext >>> bits) | (ext << (60 - bits))) & EXTENDED_MAGNITUDE;
+	}
+
+	/** Shift left a double word by the specified number of bits.
+	 */
+	public static long shiftLeftBinary(long ext, int n)
+	{
+		if(n<=0)
+			return ext;
+		if(n>=60)
+			return 0;
+		return (ext << n) & EXTENDED_MAGNITUDE;
+	}
+
+	/** Shift right a double word by the specified number of bits.
+	 */
+	public static long shiftRightBinary(long ext, int n)
+	{
+		if(n<=0)
+			return ext;
+		if(n>=60)
+			return 0;
+		return (ext & EXTENDED_MAGNITUDE) >>> n;
+	}
+
+	/** Return a string representation of a word of the given width,
+	 *  in the same format as {@link MixWord#toString MixWord.toString()}.
+	 */
+	public static String toString(int w, int width)
+	{
+		StringBuilder s = new StringBuilder(3*width + 1);
+		s.append(w<0 ? '-' : '+');
+		for(int pos = MixVM.REGISTER_WIDTH - width + 1; pos<=MixVM.REGISTER_WIDTH; pos++)
+			s.append(' ').append(getByte(w, pos));
+		return s.toString();
+	}
+
+	/** Return a string representation of a word, in the same format as
+	 *  {@link MixWord#toString MixWord.toString()}.
+	 */
+	public static String toString(int w)
+	{
+		return toString(w, MixVM.REGISTER_WIDTH);
+	}
+}
@@ -0,0 +1,126 @@
+package mix.vm;
+
+import java.util.Arrays;
+
+/** A MIX memory split into pages of 64 words, which are shared between
+ *  copies and copied on the first write. {@link #fork fork()} and
+ *  {@link #restore restore()} thus take a time independent of the size
+ *  of the memory, and a copy costs only the pages that are later modified.
+ *  This is the backend that makes {@link MixVM#snapshot MixVM.snapshot()}
+ *  cheap.
+ */
+public class PagedMemory extends Memory
+{
+	/** The number of address bits selecting the word within a page. */
+	private static final int PAGE_BITS = 6;
+
+	/** The number of words in a page. */
+	public static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private static final int N_PAGES = (MixVM.MEMORY_SIZE + PAGE_SIZE - 1)/PAGE_SIZE;
+
+	/** The pages of packed memory words. */
+	protected int[][] pages;
+
+	/** Whether each page may be shared with another memory, and so must
+	 *  be copied before it is written.
+	 */
+	protected boolean[] shared;
+
+	/** Create a new memory whose words are all +0.
+	 */
+	public PagedMemory()
+	{
+		pages = new int[N_PAGES][PAGE_SIZE];
+		shared = new boolean[N_PAGES];
+	}
+
+	/** Create a memory sharing all the given pages.
+	 */
+	private PagedMemory(int[][] p)
+	{
+		pages = p.clone();
+		shared = new boolean[N_PAGES];
+		Arrays.fill(shared, true);
+	}
+
+	public int get(int address)
+	{
+		return pages[address >> PAGE_BITS][address & PAGE_MASK];
+	}
+
+	public void set(int address, int word)
+	{
+		int p = address >> PAGE_BITS;
+		if(shared[p])
+			unshare(p);
+		pages[p][address & PAGE_MASK] = word;
+	}
+
+	/** Give a page its own copy of the words.
+	 */
+	private void unshare(int p)
+	{
+		pages[p] = pages[p].clone();
+		shared[p] = false;
+	}
+
+	public void copyTo(int[] image)
+	{
+		for(int p = 0, a = 0; p<N_PAGES; p++, a += PAGE_SIZE)
+			System.arraycopy(pages[p], 0, image, a, Math.min(PAGE_SIZE, MixVM.MEMORY_SIZE - a));
+	}
+
+	public void copyFrom(int[] image)
+	{
+		for(int p = 0, a = 0; p<N_PAGES; p++, a += PAGE_SIZE)
+		{
+			if(shared[p])
+			{
+				pages[p] = new int[PAGE_SIZE];
+				shared[p] = false;
+			}
+			System.arraycopy(image, a, pages[p], 0, Math.min(PAGE_SIZE, MixVM.MEMORY_SIZE - a));
+		}
+	}
+
+	/** Return a copy of this memory sharing all its pages; from now on,
+	 *  both copy their pages on the first write.
+	 */
+	public Memory fork()
+	{
+		Arrays.fill(shared, true);
+		return new PagedMemory(pages);
+	}
+
+	/** Make the contents of this memory equal to those of the given one.
+	 *  If that is a paged memory, its pages are shared, not copied; the
+	 *  given memory itself is not modified, so that several memories can
+	 *  be restored from it at the same time.
+	 */
+	public void restore(Memory m)
+	{
+		if(!(m instanceof PagedMemory))
+		{
+			super.restore(m);
+			return;
+		}
+		PagedMemory pm = (PagedMemory) m;
+		if(!allShared(pm))
+			Arrays.fill(pm.shared, true);
+		pages = pm.pages.clone();
+		Arrays.fill(shared, true);
+	}
+
+	/** Check whether all the pages of a memory are marked as shared.
+	 */
+	private static boolean allShared(PagedMemory m)
+	{
+		for(int p = 0; p<N_PAGES; p++)
+			if(!m.shared[p])
+				return false;
+		return true;
+	}
+}
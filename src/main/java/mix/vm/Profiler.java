@@ -0,0 +1,135 @@
+package mix.vm;
+
+import java.io.*;
+import java.util.Arrays;
+
+/** A cycle-accurate execution profile of a MIX program.
+ *  For every memory address, the profiler records how many times the
+ *  instruction at that address was executed, and how many clock cycles
+ *  were spent executing it. These are the figures Knuth writes in the
+ *  margin of a program to analyze its running time.
+ *
+ *  <P>A profiler is enabled by attaching it to a virtual machine with
+ *  {@link MixVM#setProfiler MixVM.setProfiler()}.</P>
+ */
+public class Profiler
+{
+	/** Execution counts, indexed by address. */
+	protected final long[] counts;
+	
+	/** Clock cycles, indexed by address. */
+	protected final long[] cycles;
+	
+	/** Create a new, empty profile.
+	 */
+	public Profiler()
+	{
+		counts = new long[MixVM.MEMORY_SIZE];
+		cycles = new long[MixVM.MEMORY_SIZE];
+	}
+	
+	/** Record one execution of the instruction at the given address,
+	 *  which took the given number of cycles.
+	 */
+	void record(int address, long time)
+	{
+		counts[address]++;
+		cycles[address] += time;
+	}
+	
+	/** Clear the profile.
+	 */
+	public void reset()
+	{
+		Arrays.fill(counts, 0);
+		Arrays.fill(cycles, 0);
+	}
+	
+	/** Return the number of times the instruction at the given address
+	 *  was executed.
+	 */
+	public long getCount(int address)
+	{
+		return counts[address];
+	}
+	
+	/** Return the number of cycles spent executing the instruction at
+	 *  the given address.
+	 */
+	public long getCycles(int address)
+	{
+		return cycles[address];
+	}
+	
+	/** Return the total number of instructions executed.
+	 */
+	public long getTotalCount()
+	{
+		long n = 0;
+		for(int i = 0; i<counts.length; i++)
+			n += counts[i];
+		return n;
+	}
+	
+	/** Return the total number of cycles.
+	 */
+	public long getTotalCycles()
+	{
+		long n = 0;
+		for(int i = 0; i<cycles.length; i++)
+			n += cycles[i];
+		return n;
+	}
+	
+	/** Write the profile as comma-separated values, one line per
+	 *  executed address, with a header line.
+	 */
+	public void writeCSV(PrintStream ps)
+	{
+		ps.println("address,count,cycles");
+		for(int i = 0; i<counts.length; i++)
+			if(counts[i]!=0)
+				ps.println(i + "," + counts[i] + "," + cycles[i]);
+		ps.flush();
+	}
+	
+	/** Write the MIXAL source program annotated with the profile:
+	 *  every line which assembled a word is preceded by its address,
+	 *  execution count and cycles, and the totals are given at the end.
+	 *
+	 *  @param source the MIXAL source program
+	 *  @param sourceLines the source line number of each address, as
+	 *         returned by the assembler, zero meaning no line
+	 *  @param ps the destination of the listing
+	 */
+	public void writeListing(BufferedReader source, int[] sourceLines, PrintStream ps) throws IOException
+	{
+		// Invert the map from addresses to lines:
+		int lines = 0;
+		for(int i = 0; i<sourceLines.length; i++)
+			lines = Math.max(lines, sourceLines[i]);
+		int[] address = new int[lines + 1];
+		Arrays.fill(address, -1);
+		for(int i = 0; i<sourceLines.length; i++)
+			if(sourceLines[i]>0)
+				address[sourceLines[i]] = i;
+
+		ps.println(String.format("%5s  %-4s %10s %12s  %s", "LINE", "LOC", "COUNT", "CYCLES", "SOURCE"));
+		String s;
+		int line = 0;
+		while((s = source.readLine())!=null)
+		{
+			line++;
+			int a = line<address.length ? address[line] : -1;
+			if(a<0)
+				ps.println(String.format("%5d %29s  %s", line, "", s));
+			else if(counts[a]==0)
+				ps.println(String.format("%5d  %04d %23s  %s", line, a, "", s));
+			else
+				ps.println(String.format("%5d  %04d %10d %12d  %s", line, a, counts[a], cycles[a], s));
+		}
+		ps.println();
+		ps.println(String.format("TOTAL%7s%10d %12d", "", getTotalCount(), getTotalCycles()));
+		ps.flush();
+	}
+}
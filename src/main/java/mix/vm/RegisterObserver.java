@@ -0,0 +1,23 @@
+package mix.vm;
+
+/** An observer of the registers of a MIX virtual machine, such as the
+ *  register view of the IDE; see
+ *  {@link MixVM#setRegisterView MixVM.setRegisterView()}.
+ */
+public interface RegisterObserver
+{
+	/** The registers have changed; they are read later, once the
+	 *  machine has stopped.
+	 */
+	void update(MixVM mix);
+
+	/** The registers have changed, and must be read now, by the thread
+	 *  running the machine, between two instructions.
+	 */
+	void sample(MixVM mix);
+
+	/** Check whether the last change has not been shown yet, in which
+	 *  case a running machine needs not sample its registers.
+	 */
+	boolean isDirty();
+}
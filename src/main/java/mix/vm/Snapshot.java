@@ -0,0 +1,84 @@
+package mix.vm;
+
+/** The complete state of a MIX virtual machine at some point of its
+ *  execution, as taken by {@link MixVM#snapshot MixVM.snapshot()}: the
+ *  registers, the overflow toggle and the comparison indicator, the halt
+ *  flag, the clock, the position of the I/O units, and the memory.
+ *
+ *  <P>A snapshot is immutable. It can be restored any number of times,
+ *  into the machine that took it or into another one, with
+ *  {@link MixVM#restore MixVM.restore()}; on a machine running on a
+ *  {@link PagedMemory}, both taking and restoring it share the memory
+ *  pages instead of copying them. The contents of the files attached to
+ *  the I/O units are not part of the snapshot.</P>
+ */
+public final class Snapshot
+{
+	final int rA;
+	final int rX;
+	final int rJ;
+	final int lp;
+	final int[] rI;
+	final boolean overflow;
+	final int comparison;
+	final boolean halted;
+	final long clock;
+
+	/** The position of each I/O unit in its file, in bytes. */
+	final long[] positions;
+
+	/** The time at which each I/O unit is ready. */
+	final long[] readyAt;
+
+	/** The memory, never written after the snapshot is taken. */
+	final Memory memory;
+
+	Snapshot(MixVM mix)
+	{
+		rA = mix.rA;
+		rX = mix.rX;
+		rJ = mix.rJ;
+		lp = mix.lp;
+		rI = mix.rI.clone();
+		overflow = mix.overflow;
+		comparison = mix.comparison;
+		halted = mix.halted;
+		clock = mix.clock;
+		positions = new long[MixVM.N_IO_UNITS];
+		readyAt = new long[MixVM.N_IO_UNITS];
+		for(int i = 0; i<MixVM.N_IO_UNITS; i++)
+		{
+			positions[i] = mix.u[i].position;
+			readyAt[i] = mix.u[i].readyAt;
+		}
+		memory = mix.memory.fork();
+	}
+
+	/** Return the packed content of a memory word.
+	 */
+	public int get(int address)
+	{
+		return memory.get(address);
+	}
+
+	/** Return the location pointer.
+	 */
+	public int getLocation()
+	{
+		return lp;
+	}
+
+	/** Return the clock, in MIX cycles.
+	 */
+	public long getClock()
+	{
+		return clock;
+	}
+
+	/** Check whether the machine was halted.
+	 */
+	public boolean isHalted()
+	{
+		return halted;
+	}
+}
@@ -0,0 +1,179 @@
+package mix.vm;
+
+import java.util.Arrays;
+
+/** The second tier of the MIX execution engine.
+ *
+ *  <P>The translator counts how many times the interpreter enters each
+ *  address; when an address becomes hot, the straight-line run of
+ *  instructions starting there, up to and including the first jump,
+ *  I/O or halt instruction, is translated into a {@link Block}: a chain
+ *  of {@link Operation} handlers with their instructions already decoded,
+ *  which executes without any fetch, decode or dispatch work.</P>
+ *
+ *  <P>Since every handler ticks the clock and sets the OV toggle and
+ *  the comparison indicator itself, a block is cycle-exact with respect
+ *  to the interpreter. A store into a translated instruction discards
+ *  the blocks containing it, so self-modifying code falls back to the
+ *  interpreter until the modified code becomes hot again.</P>
+ */
+final class Translator
+{
+	/** The number of entries after which an address is translated. */
+	static final int THRESHOLD = 32;
+	
+	/** The maximum number of instructions in a block. */
+	static final int MAX_LENGTH = 64;
+	
+	/** A translated basic block. */
+	static final class Block
+	{
+		/** The address of the first instruction. */
+		final int start;
+		
+		/** The decoded instructions. */
+		final Instruction[] code;
+		
+		/** Their handlers. */
+		final Operation[] ops;
+		
+		/** Cleared when one of the instructions is overwritten. */
+		boolean valid;
+		
+		Block(int start, Instruction[] code, Operation[] ops)
+		{
+			this.start = start;
+			this.code = code;
+			this.ops = ops;
+			valid = true;
+		}
+		
+		/** The address past the last instruction. */
+		int end()
+		{
+			return start + code.length;
+		}
+		
+		/** Execute the block, or its first <CODE>limit</CODE> instructions,
+		 *  and return the number of instructions executed. Execution stops
+		 *  early if the block overwrites one of its own instructions.
+		 */
+		int execute(MixVM mix, long limit) throws Exception
+		{
+			int n = limit<code.length ? (int) limit : code.length;
+			for(int k = 0; k<n; k++)
+			{
+				Instruction in = code[k];
+				mix.lp = start + k + 1;
+				in.index(mix);
+				ops[k].execute(mix, in);
+				if(!valid)
+					return k + 1;
+			}
+			return n;
+		}
+	}
+	
+	/** The number of entries of each address not translated yet. */
+	private final int[] counts;
+	
+	/** The blocks, indexed by their start address. */
+	private final Block[] blocks;
+	
+	/** Whether an address belongs to at least one block. */
+	private final boolean[] covered;
+	
+	/** Create an empty translator for a memory of the given size.
+	 */
+	Translator(int size)
+	{
+		counts = new int[size];
+		blocks = new Block[size];
+		covered = new boolean[size];
+	}
+	
+	/** Return the block starting at the given address, translating it
+	 *  if it has just become hot, or <CODE>null</CODE> if the address is
+	 *  still to be interpreted.
+	 */
+	Block lookup(MixVM mix, int addr)
+	{
+		Block b = blocks[addr];
+		if(b==null && ++counts[addr]>=THRESHOLD)
+			b = translate(mix, addr);
+		return b;
+	}
+	
+	/** Translate the basic block starting at the given address.
+	 */
+	private Block translate(MixVM mix, int addr)
+	{
+		int size = blocks.length;
+		int n = 0;
+		Instruction[] code = new Instruction[MAX_LENGTH];
+		Operation[] ops = new Operation[MAX_LENGTH];
+		while(n<MAX_LENGTH && addr + n<size)
+		{
+			int word = mix.memory.get(addr + n);
+			int op = DecodeCache.encode(word);
+			code[n] = new Instruction();
+			code[n].set(op, PackedWord.field(word, 0, 2));
+			ops[n++] = OperationTable.get(op);
+			if(endsBlock(code[n - 1]))
+				break;
+		}
+		Block b = new Block(addr, Arrays.copyOf(code, n), Arrays.copyOf(ops, n));
+		blocks[addr] = b;
+		for(int i = addr; i<b.end(); i++)
+			covered[i] = true;
+		return b;
+	}
+	
+	/** Check whether an instruction may transfer control, halt the
+	 *  machine or do input-output, and must therefore end a block.
+	 */
+	private static boolean endsBlock(Instruction in)
+	{
+		return (in.C>=34 && in.C<=47) || (in.C==5 && in.F==2);
+	}
+	
+	/** Discard the blocks containing the given address, after it has
+	 *  been written.
+	 */
+	void invalidate(int addr)
+	{
+		if(!covered[addr])
+			return;
+		for(int i = Math.max(0, addr - MAX_LENGTH + 1); i<=addr; i++)
+		{
+			Block b = blocks[i];
+			if(b!=null && b.end()>addr)
+			{
+				b.valid = false;
+				blocks[i] = null;
+				counts[i] = 0;
+			}
+		}
+		// Other addresses of the discarded blocks may still be covered
+		// by a surviving block, so the flags are recomputed around them.
+		int from = Math.max(0, addr - MAX_LENGTH + 1);
+		int to = Math.min(blocks.length, addr + MAX_LENGTH);
+		Arrays.fill(covered, from, to, false);
+		for(int i = Math.max(0, from - MAX_LENGTH + 1); i<to; i++)
+		{
+			Block b = blocks[i];
+			if(b!=null)
+				for(int j = Math.max(b.start, from); j<Math.min(b.end(), to); j++)
+					covered[j] = true;
+		}
+	}
+	
+	/** Discard all blocks and execution counts.
+	 */
+	void invalidate()
+	{
+		Arrays.fill(counts, 0);
+		Arrays.fill(blocks, null);
+		Arrays.fill(covered, false);
+	}
+}
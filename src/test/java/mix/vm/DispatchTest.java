@@ -0,0 +1,93 @@
+package mix.vm;
+
+import mix.asm.MixAssembler;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** The same program run by the switch, by the operation table and by
+ *  {@link MixVM#runFast runFast()} ends in the same state.
+ */
+public class DispatchTest
+{
+	/** Address transfers after an overflow, testing the toggle. */
+	private static final String PROGRAM =
+		"BIG     EQU  1000000000\n" +
+		"        ORIG 100\n" +
+		"START   LDA  =BIG=\n" +
+		"        ADD  =BIG=\n" +
+		"        ENTA 0\n" +
+		"        JNOV 1F\n" +
+		"        ENTA 3\n" +
+		"1H      LDA  =BIG=\n" +
+		"        ADD  =BIG=\n" +
+		"        ENT1 0\n" +
+		"        JNOV 1F\n" +
+		"        ENTX 5\n" +
+		"1H      LDA  =BIG=\n" +
+		"        ADD  =BIG=\n" +
+		"        ENNX 0\n" +
+		"        JOV  1F\n" +
+		"        ENT2 7\n" +
+		"1H      ENT3 10\n" +
+		"2H      DEC3 1\n" +
+		"        INCA 1\n" +
+		"        STA  500,3\n" +
+		"        J3P  2B\n" +
+		"        CMPA =BIG=\n" +
+		"        HLT\n" +
+		"        END  START\n";
+
+	private static final int SWITCH = 0, TABLE = 1, FAST = 2;
+
+	private static MixVM run(int engine) throws Exception
+	{
+		MixContext context = MixContext.standard().withInput(null).withOutput(null);
+		char[] src = PROGRAM.toCharArray();
+		MixImage image = new MixAssembler(src, src.length, context).compile();
+		MixVM mix = new MixVM(context);
+		mix.setTableDispatch(engine!=SWITCH);
+		mix.start(mix.load(image));
+		if(engine==FAST)
+			mix.runFast(10000);
+		else
+			for(int i = 0; i<10000 && !mix.isHalted(); i++)
+				mix.step();
+		mix.close();
+		assertTrue(mix.isHalted());
+		return mix;
+	}
+
+	static void assertSameState(MixVM expected, MixVM actual)
+	{
+		assertEquals(expected.getAccumulator().pack(), actual.getAccumulator().pack());
+		assertEquals(expected.getExtension().pack(), actual.getExtension().pack());
+		for(int i = 1; i<=MixVM.N_INDEX_REGISTERS; i++)
+			assertEquals(expected.getIndexRegister(i).pack(), actual.getIndexRegister(i).pack());
+		assertEquals(expected.getJumpRegister().pack(), actual.getJumpRegister().pack());
+		assertEquals(expected.getOV(), actual.getOV());
+		assertEquals(expected.getCmp(), actual.getCmp());
+		assertEquals(expected.clock(), actual.clock());
+		for(int a = 0; a<MixVM.MEMORY_SIZE; a++)
+			assertEquals(expected.getMemory().get(a), actual.getMemory().get(a));
+	}
+
+	@Test
+	public void tableMatchesSwitch() throws Exception
+	{
+		assertSameState(run(SWITCH), run(TABLE));
+	}
+
+	@Test
+	public void runFastMatchesSwitch() throws Exception
+	{
+		assertSameState(run(SWITCH), run(FAST));
+	}
+
+	/** ENNX 0 clears the overflow toggle: JOV does not jump over ENT2. */
+	@Test
+	public void enterClearsOverflow() throws Exception
+	{
+		assertEquals(7, run(TABLE).getIndexRegister(2).intValue());
+		assertEquals(7, run(FAST).getIndexRegister(2).intValue());
+	}
+}
@@ -0,0 +1,128 @@
+package mix.vm;
+
+import java.io.*;
+import mix.asm.MixAssembler;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Round trips of a block through a tape unit, attached to a file or
+ *  mapped into memory.
+ */
+public class MappedIOUnitTest
+{
+	/** Write a block to tape 1, rewind it, and read the block back. */
+	private static final String PROGRAM =
+		"BUF     EQU  1000\n" +
+		"INBUF   EQU  2000\n" +
+		"        ORIG 0\n" +
+		"START   ENTA 42\n" +
+		"        STA  BUF\n" +
+		"        OUT  BUF(1)\n" +
+		"        IOC  0(1)\n" +
+		"        IN   INBUF(1)\n" +
+		"        LDA  INBUF\n" +
+		"        HLT\n" +
+		"        END  START\n";
+
+	private static int roundTrip(boolean mapped, boolean async) throws Exception
+	{
+		File f = File.createTempFile("tape", ".mt");
+		f.delete();
+		MixContext context = MixContext.standard().withInput(null).withOutput(null);
+		MixVM mix = new MixVM(context);
+		try
+		{
+			char[] src = PROGRAM.toCharArray();
+			MixImage image = new MixAssembler(src, src.length, context).compile();
+			if(mapped)
+				mix.attachMapped(1, f);
+			else
+				mix.attach(1, f);
+			mix.setAsyncOutput(async);
+			mix.start(mix.load(image));
+			mix.runFast(1000);
+			assertTrue(mix.isHalted());
+			return mix.getAccumulator().intValue();
+		}
+		finally
+		{
+			mix.close();
+			assertEquals(4*mix.unit(1).getBlockSize(), f.length());
+			f.delete();
+		}
+	}
+
+	@Test
+	public void fileRoundTrip() throws Exception
+	{
+		assertEquals(42, roundTrip(false, false));
+		assertEquals(42, roundTrip(false, true));
+	}
+
+	@Test
+	public void mappedRoundTrip() throws Exception
+	{
+		assertEquals(42, roundTrip(true, false));
+		assertEquals(42, roundTrip(true, true));
+	}
+
+	/** Reading past the end of the mapping yields zeros. */
+	@Test
+	public void readPastMapping() throws Exception
+	{
+		File f = File.createTempFile("tape", ".mt");
+		MappedIOUnit unit = new MappedIOUnit();
+		try
+		{
+			unit.setBlockSize(100);
+			unit.setFile(f);
+			int[] block = new int[unit.getBlockSize()];
+			int blocks = MappedIOUnit.CHUNK/(4*block.length) + 2;
+			for(int i = 0; i<blocks; i++)
+			{
+				block[0] = 1;
+				unit.read(block);
+				assertEquals(0, block[0]);
+			}
+		}
+		finally
+		{
+			unit.close();
+			f.delete();
+		}
+	}
+
+	/** Attaching a tape again, e.g., to rewind it, keeps its data; a tape
+	 *  which is only read does not grow.
+	 */
+	@Test
+	public void reattach() throws Exception
+	{
+		File f = File.createTempFile("tape", ".mt");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(f));
+		for(int i = 0; i<100; i++)
+			out.writeInt(i + 1);
+		out.close();
+		MixVM mix = new MixVM(MixContext.standard().withInput(null).withOutput(null));
+		try
+		{
+			mix.attachMapped(0, f);
+			assertEquals(400, f.length());
+			mix.attachMapped(0, f);
+			IOUnit unit = mix.unit(0);
+			int[] block = new int[unit.getBlockSize()];
+			unit.read(block);
+			assertEquals(1, block[0]);
+			assertEquals(100, block[99]);
+			unit.read(block);
+			assertEquals(0, block[0]);
+			assertEquals(400, f.length());
+		}
+		finally
+		{
+			mix.close();
+			assertEquals(400, f.length());
+			f.delete();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package mix.vm;
+
+import java.io.*;
+import mix.asm.MixAssembler;
+import org.junit.Test;
+
+/** The same program run by {@link MixVM#runFast runFast()} with and
+ *  without translation of hot blocks ends in the same state, down to the
+ *  clock.
+ */
+public class TranslatorTest
+{
+	/** The sample programs of the benchmarks. */
+	private static final File SAMPLES =
+		new File(System.getProperty("basedir", "."), "benchmarks/src/main/resources/mix/bench");
+
+	/** Hot loops storing into their own block: the address of the ADD at
+	 *  LOOP, already executed, and of the one at NEXT, executed after the
+	 *  store in the same pass; then an instruction patched twice per pass.
+	 */
+	private static final String SAME_BLOCK =
+		"        ORIG 1000\n" +
+		"START   ENT1 0\n" +
+		"FILL    ST1  2000,1\n" +
+		"        INC1 1\n" +
+		"        CMP1 =300=\n" +
+		"        JL   FILL\n" +
+		"        ENTA 0\n" +
+		"        ENT2 300\n" +
+		"LOOP    ADD  2000\n" +
+		"        LDX  LOOP(0:2)\n" +
+		"        INCX 1\n" +
+		"        STX  LOOP(0:2)\n" +
+		"        STX  NEXT(0:2)\n" +
+		"NEXT    ADD  0\n" +
+		"        DEC2 1\n" +
+		"        J2P  LOOP\n" +
+		"        STA  RES\n" +
+		"        ENT3 100\n" +
+		"L2      LDA  P1\n" +
+		"        STA  SLOT\n" +
+		"SLOT    NOP\n" +
+		"        LDA  P2\n" +
+		"        STA  SLOT\n" +
+		"        DEC3 1\n" +
+		"        J3P  L2\n" +
+		"        STX  RES2\n" +
+		"        HLT\n" +
+		"P1      INCX 1\n" +
+		"P2      INCX 2\n" +
+		"RES     CON  0\n" +
+		"RES2    CON  0\n" +
+		"        END  START\n";
+
+	/** A hot loop patching the address of an instruction of the hot
+	 *  subroutine it calls, and the subroutine patching an instruction of
+	 *  the loop.
+	 */
+	private static final String OTHER_BLOCK =
+		"        ORIG 1000\n" +
+		"START   ENT1 0\n" +
+		"FILL    ST1  2000,1\n" +
+		"        INC1 1\n" +
+		"        CMP1 =300=\n" +
+		"        JL   FILL\n" +
+		"        ENTA 0\n" +
+		"        ENT2 300\n" +
+		"LOOP    ENT3 2000,2\n" +
+		"        ST3  SUBR(0:2)\n" +
+		"        JMP  SUBR\n" +
+		"BACK    INCX 0\n" +
+		"        DEC2 1\n" +
+		"        J2P  LOOP\n" +
+		"        STA  RES\n" +
+		"        STX  RES2\n" +
+		"        HLT\n" +
+		"SUBR    ADD  0\n" +
+		"        ST2  BACK(0:2)\n" +
+		"        JMP  BACK\n" +
+		"RES     CON  0\n" +
+		"RES2    CON  0\n" +
+		"        END  START\n";
+
+	private static MixVM run(char[] src, int length, boolean translation) throws Exception
+	{
+		MixContext context = MixContext.standard().withInput(null).withOutput(null);
+		MixImage image = new MixAssembler(src, length, context).compile();
+		MixVM mix = new MixVM(context);
+		mix.attachOutput(18, new PrintStream(new ByteArrayOutputStream()));
+		mix.setTranslation(translation);
+		mix.start(mix.load(image));
+		mix.runFast(100000000);
+		mix.close();
+		return mix;
+	}
+
+	private static void assertSameRun(char[] src, int length) throws Exception
+	{
+		DispatchTest.assertSameState(run(src, length, false), run(src, length, true));
+	}
+
+	private static void assertSameRun(String program) throws Exception
+	{
+		char[] src = program.toCharArray();
+		assertSameRun(src, src.length);
+	}
+
+	private static void assertSameSample(String name) throws Exception
+	{
+		Reader r = new InputStreamReader(new FileInputStream(new File(SAMPLES, name + ".mixal")), "US-ASCII");
+		try
+		{
+			CharArrayWriter w = new CharArrayWriter();
+			char[] buffer = new char[4096];
+			int n;
+			while((n = r.read(buffer))>0)
+				w.write(buffer, 0, n);
+			assertSameRun(w.toCharArray(), w.size());
+		}
+		finally
+		{
+			r.close();
+		}
+	}
+
+	@Test
+	public void sort() throws Exception
+	{
+		assertSameSample("sort");
+	}
+
+	@Test
+	public void primes() throws Exception
+	{
+		assertSameSample("primes");
+	}
+
+	@Test
+	public void floatingPoint() throws Exception
+	{
+		assertSameSample("float");
+	}
+
+	@Test
+	public void storeIntoSameBlock() throws Exception
+	{
+		assertSameRun(SAME_BLOCK);
+	}
+
+	@Test
+	public void storeIntoOtherBlock() throws Exception
+	{
+		assertSameRun(OTHER_BLOCK);
+	}
+}